@@ -0,0 +1,125 @@
+package com.openclassrooms.starterjwt.security;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.openclassrooms.starterjwt.SpringBootSecurityJwtApplication;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+
+/**
+ * Login throughput under concurrent load, on the application started against the in-memory H2 database of the test
+ * profile. {@code entityLookups} replays the former pipeline, which loaded the user entity to authenticate and a second
+ * time to read the admin flag; {@code credentialsProjection} is the single narrow query used now. {@code authenticate}
+ * runs the whole current login, with BCrypt at its minimum strength so that the lookups still weigh in.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class LoginBenchmark {
+
+  private static final int USERS = 1_000;
+
+  private static final String PASSWORD = "test!1234";
+
+  private ConfigurableApplicationContext context;
+
+  private UserRepository userRepository;
+
+  private UserDetailsServiceImpl userDetailsService;
+
+  private AuthenticationManager authenticationManager;
+
+  @Setup
+  public void setUp() {
+    context = new SpringApplicationBuilder(SpringBootSecurityJwtApplication.class)
+        .profiles("test")
+        .properties(
+            "server.port=0",
+            "oc.app.bcryptStrength=4",
+            "oc.app.bcryptTargetLatencyMs=0",
+            "oc.app.userDetailsCache.maxSize=0",
+            "spring.jpa.show-sql=false",
+            "logging.level.root=WARN",
+            "logging.level.org.springframework.security=WARN")
+        .run();
+    userRepository = context.getBean(UserRepository.class);
+    userDetailsService = context.getBean(UserDetailsServiceImpl.class);
+    authenticationManager = context.getBean(AuthenticationManager.class);
+
+    String hash = context.getBean(PasswordEncoder.class).encode(PASSWORD);
+    List<Object[]> users = new ArrayList<>(USERS);
+    for (int i = 0; i < USERS; i++) {
+      users.add(new Object[]{email(i), hash, "User", "bench-" + i});
+    }
+    context.getBean(JdbcTemplate.class)
+        .batchUpdate("INSERT INTO USERS (email, password, first_name, last_name, admin) VALUES (?, ?, ?, ?, false)", users);
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  private static String email(int i) {
+    return "bench-" + i + "@studio.com";
+  }
+
+  private static String randomEmail() {
+    return email(ThreadLocalRandom.current().nextInt(USERS));
+  }
+
+  @Benchmark
+  public boolean entityLookups() {
+    String email = randomEmail();
+    User user = userRepository.findByEmail(email).orElseThrow(IllegalStateException::new);
+    UserDetailsImpl principal = UserDetailsImpl.builder()
+        .id(user.getId())
+        .username(user.getEmail())
+        .lastName(user.getLastName())
+        .firstName(user.getFirstName())
+        .password(user.getPassword())
+        .build();
+    return principal.getId() != null && userRepository.findByEmail(email).map(User::isAdmin).orElse(false);
+  }
+
+  @Benchmark
+  public Boolean credentialsProjection() {
+    return ((UserDetailsImpl) userDetailsService.loadUserByUsername(randomEmail())).getAdmin();
+  }
+
+  @Benchmark
+  public Object authenticate() {
+    Authentication authentication = authenticationManager.authenticate(
+        new UsernamePasswordAuthenticationToken(randomEmail(), PASSWORD));
+    return authentication.getPrincipal();
+  }
+}
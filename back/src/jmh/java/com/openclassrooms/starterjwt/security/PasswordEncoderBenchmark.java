@@ -0,0 +1,59 @@
+package com.openclassrooms.starterjwt.security;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Cost of hashing and checking a password with BCrypt at the strength configured in application.properties,
+ * i.e. the CPU spent by each registration and each login.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PasswordEncoderBenchmark {
+
+  private static final String PASSWORD = "test!1234";
+
+  private BCryptPasswordEncoder passwordEncoder;
+
+  private String hash;
+
+  @Setup
+  public void setUp() throws IOException {
+    Properties properties = new Properties();
+    try (InputStream in = getClass().getResourceAsStream("/application.properties")) {
+      properties.load(in);
+    }
+
+    int strength = Integer.parseInt(properties.getProperty("oc.app.bcryptStrength", "10"));
+    passwordEncoder = new BCryptPasswordEncoder(strength);
+    hash = passwordEncoder.encode(PASSWORD);
+  }
+
+  @Benchmark
+  public String encode() {
+    return passwordEncoder.encode(PASSWORD);
+  }
+
+  @Benchmark
+  public boolean matches() {
+    return passwordEncoder.matches(PASSWORD, hash);
+  }
+}
@@ -0,0 +1,79 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+
+/**
+ * Per-request costs of the JWT authentication path: issuing a token at login, checking it,
+ * and extracting it from the Authorization header.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtBenchmark {
+
+  private JwtUtils jwtUtils;
+
+  private Authentication authentication;
+
+  private String token;
+
+  private AuthTokenFilter authTokenFilter;
+
+  private MockHttpServletRequest request;
+
+  @Setup
+  public void setUp() {
+    jwtUtils = new JwtUtils();
+    ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "openclassrooms");
+    ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 86400000);
+
+    UserDetailsImpl principal = UserDetailsImpl.builder()
+        .id(1L)
+        .username("yoga@studio.com")
+        .firstName("Admin")
+        .lastName("Admin")
+        .admin(true)
+        .build();
+    authentication = new UsernamePasswordAuthenticationToken(principal, null);
+    token = jwtUtils.generateJwtToken(authentication);
+
+    authTokenFilter = new AuthTokenFilter();
+    request = new MockHttpServletRequest();
+    request.addHeader("Authorization", "Bearer " + token);
+  }
+
+  @Benchmark
+  public String generateJwtToken() {
+    return jwtUtils.generateJwtToken(authentication);
+  }
+
+  @Benchmark
+  public boolean validateJwtToken() {
+    return jwtUtils.validateJwtToken(token);
+  }
+
+  @Benchmark
+  public String parseJwt() {
+    return authTokenFilter.parseJwt(request);
+  }
+}
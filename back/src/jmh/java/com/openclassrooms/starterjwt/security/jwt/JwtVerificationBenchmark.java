@@ -0,0 +1,75 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+
+/**
+ * Compares the former request path of {@link AuthTokenFilter} (validate, then parse again for the subject)
+ * with {@link JwtUtils#verifyJwtToken}. With more distinct tokens than the verified-token cache holds,
+ * the single-parse path is measured without cache hits.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtVerificationBenchmark {
+
+  @Param({"1", "4096"})
+  private int distinctTokens;
+
+  private JwtUtils jwtUtils;
+
+  private String[] tokens;
+
+  private int next;
+
+  @Setup
+  public void setUp() {
+    jwtUtils = new JwtUtils();
+    ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "openclassrooms");
+    ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 86400000);
+
+    tokens = new String[distinctTokens];
+    for (int i = 0; i < distinctTokens; i++) {
+      UserDetailsImpl principal = UserDetailsImpl.builder()
+          .id((long) i)
+          .username("user" + i + "@studio.com")
+          .build();
+      tokens[i] = jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(principal, null));
+    }
+  }
+
+  private String nextToken() {
+    String token = tokens[next];
+    next = (next + 1) % tokens.length;
+    return token;
+  }
+
+  @Benchmark
+  public String validateThenParse() {
+    String token = nextToken();
+    return jwtUtils.validateJwtToken(token) ? jwtUtils.getUserNameFromJwtToken(token) : null;
+  }
+
+  @Benchmark
+  public String verifyOnce() {
+    return jwtUtils.verifyJwtToken(nextToken()).getSubject();
+  }
+}
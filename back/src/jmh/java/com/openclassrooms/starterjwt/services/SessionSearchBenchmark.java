@@ -0,0 +1,80 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of {@link SessionSearchIndex#search} on a catalog of generated sessions, for a whole term,
+ * a short prefix and a two-term query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionSearchBenchmark {
+
+    private static final String[] WORDS = {"yoga", "vinyasa", "hatha", "yin", "nidra", "pilates", "stretching", "breath",
+            "relaxation", "meditation", "core", "strength", "balance", "flow", "beginner", "advanced", "morning", "evening",
+            "posture", "mobility", "gentle", "power", "restorative", "alignment", "spine", "hips", "shoulders", "focus"};
+
+    @Param({"1000", "50000"})
+    private int sessions;
+
+    private SessionSearchIndex index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<SessionDto> catalog = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            SessionDto session = new SessionDto();
+            session.setId((long) i);
+            session.setName(words(random, 3) + " " + i);
+            session.setDescription(words(random, 60));
+            catalog.add(session);
+        }
+
+        index = new SessionSearchIndex();
+        index.replaceAll(catalog);
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return text.toString();
+    }
+
+    @Benchmark
+    public List<SessionDto> term() {
+        return index.search("restorative", SessionService.DEFAULT_PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<SessionDto> prefix() {
+        return index.search("med", SessionService.DEFAULT_PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<SessionDto> twoTerms() {
+        return index.search("gentle spine", SessionService.DEFAULT_PAGE_SIZE);
+    }
+}
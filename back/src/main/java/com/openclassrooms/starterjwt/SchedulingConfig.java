@@ -0,0 +1,15 @@
+package com.openclassrooms.starterjwt;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Runs the {@code @Scheduled} jobs, such as the user purge, unless {@code oc.app.scheduling.enabled} is false.
+ * Tests turn it off and run the jobs themselves.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "oc.app.scheduling.enabled", havingValue = "true", matchIfMissing = true)
+public class SchedulingConfig {
+}
@@ -0,0 +1,37 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Builds the validators (weak ETag and Last-Modified) of single resources. Once they are set on a GET response,
+ * Spring answers a matching If-None-Match or If-Modified-Since with a 304 and drops the body.
+ */
+final class EntityTags {
+
+    private EntityTags() {
+    }
+
+    /**
+     * Weak ETag made of a digest of the given parts, which must cover everything the representation depends on.
+     */
+    static String weakTag(Object... parts) {
+        StringBuilder version = new StringBuilder();
+        for (Object part : parts) {
+            version.append(part).append('|');
+        }
+        return "W/\"" + DigestUtils.md5DigestAsHex(version.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    static ResponseEntity.BodyBuilder ok(String etag, LocalDateTime updatedAt) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().eTag(etag);
+        if (updatedAt != null) {
+            builder.lastModified(updatedAt.atZone(ZoneId.systemDefault()));
+        }
+        return builder;
+    }
+}
@@ -1,62 +1,232 @@
 package com.openclassrooms.starterjwt.controllers;
 
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionPageDto;
+import com.openclassrooms.starterjwt.exception.UnknownUsersException;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.payload.request.ParticipantsRequest;
+import com.openclassrooms.starterjwt.payload.response.MessageResponse;
+import com.openclassrooms.starterjwt.payload.response.SessionImportResponse;
+import com.openclassrooms.starterjwt.repository.projection.SessionView;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.ParticipationResult;
+import com.openclassrooms.starterjwt.services.ParticipationStatus;
+import com.openclassrooms.starterjwt.services.SessionCursor;
+import com.openclassrooms.starterjwt.services.SessionImportService;
+import com.openclassrooms.starterjwt.services.SessionListSnapshot;
 import com.openclassrooms.starterjwt.services.SessionService;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping("/api/session")
 @Log4j2
 public class SessionController {
+    private static final String TEXT_CSV = "text/csv";
+
+    private static final String MERGE_PATCH_JSON = "application/merge-patch+json";
+
+    private static final Set<String> PATCHABLE_FIELDS = new HashSet<>(
+            Arrays.asList("name", "date", "description", "teacher_id", "capacity", "users", "version"));
+
     private final SessionMapper sessionMapper;
     private final SessionService sessionService;
+    private final SessionListSnapshot sessionListSnapshot;
+    private final SessionImportService sessionImportService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
 
 
     public SessionController(SessionService sessionService,
-                             SessionMapper sessionMapper) {
+                             SessionMapper sessionMapper,
+                             SessionListSnapshot sessionListSnapshot,
+                             SessionImportService sessionImportService,
+                             ObjectMapper objectMapper,
+                             Validator validator) {
         this.sessionMapper = sessionMapper;
         this.sessionService = sessionService;
+        this.sessionListSnapshot = sessionListSnapshot;
+        this.sessionImportService = sessionImportService;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<?> findById(@PathVariable("id") String id) {
         try {
-            Session session = this.sessionService.getById(Long.valueOf(id));
+            SessionView session = this.sessionService.findViewById(Long.valueOf(id));
 
             if (session == null) {
                 return ResponseEntity.notFound().build();
             }
 
-            return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
+            SessionDto sessionDto = this.sessionMapper.viewToDto(session);
+            return EntityTags.ok(versionOf(sessionDto), sessionDto.getUpdatedAt()).body(sessionDto);
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    /**
+     * Without parameters, serves the upcoming sessions from the in-memory list. Spring answers 304 without a body when
+     * If-None-Match carries the current ETag. With {@code from} and/or {@code to} (ISO dates or date-times, {@code to}
+     * exclusive), reads that range from the database; {@code from} defaults to now, so past sessions are only
+     * returned when asked for.
+     */
     @GetMapping()
-    public ResponseEntity<?> findAll() {
-        List<Session> sessions = this.sessionService.findAll();
+    public ResponseEntity<?> findAll(@RequestParam(value = "from", required = false) String from,
+                                     @RequestParam(value = "to", required = false) String to) {
+        try {
+            Date now = new Date();
+            if (from == null && to == null) {
+                SessionListSnapshot.Snapshot snapshot = this.sessionListSnapshot.current().from(now);
+
+                return ResponseEntity.ok().eTag(snapshot.getEtag()).body(snapshot.getSessions());
+            }
 
-        return ResponseEntity.ok().body(this.sessionMapper.toDto(sessions));
+            Date start = from == null ? now : parseDate(from);
+            Date end = to == null ? null : parseDate(to);
+            if (end != null && !end.after(start)) {
+                return ResponseEntity.badRequest().build();
+            }
+
+            return ResponseEntity.ok().body(this.sessionMapper.viewsToDto(this.sessionService.findBetween(start, end)));
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<?> search(@RequestParam("q") String query,
+                                    @RequestParam(value = "size", required = false) String size) {
+        try {
+            int limit = size == null ? SessionService.DEFAULT_PAGE_SIZE : Integer.parseInt(size);
+            if (limit < 1) {
+                return ResponseEntity.badRequest().build();
+            }
+
+            return ResponseEntity.ok().body(this.sessionListSnapshot.search(query, Math.min(limit, SessionService.MAX_PAGE_SIZE)));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Streams every session as NDJSON, one per line, from the database cursor straight to the response, so memory use
+     * stays the same whatever the size of the catalog.
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void export(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        ObjectWriter writer = this.objectMapper.writerFor(SessionDto.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        try (JsonGenerator generator = this.objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.setRootValueSeparator(null);
+            this.sessionService.forEachView(view -> {
+                try {
+                    writer.writeValue(generator, this.sessionMapper.viewToDto(view));
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    @GetMapping("/page")
+    public ResponseEntity<?> findPage(@RequestParam(value = "cursor", required = false) String cursor,
+                                      @RequestParam(value = "size", required = false) String size) {
+        try {
+            int pageSize = size == null ? SessionService.DEFAULT_PAGE_SIZE : Integer.parseInt(size);
+            if (pageSize < 1) {
+                return ResponseEntity.badRequest().build();
+            }
+            pageSize = Math.min(pageSize, SessionService.MAX_PAGE_SIZE);
+
+            SessionCursor after = cursor == null ? null : SessionCursor.decode(cursor);
+            List<SessionView> sessions = this.sessionService.findPage(after, pageSize + 1);
+
+            String nextCursor = null;
+            if (sessions.size() > pageSize) {
+                sessions = sessions.subList(0, pageSize);
+                nextCursor = SessionCursor.of(sessions.get(pageSize - 1)).encode();
+            }
+
+            return ResponseEntity.ok().body(new SessionPageDto(this.sessionMapper.viewsToDto(sessions), nextCursor));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @PostMapping()
     public ResponseEntity<?> create(@Valid @RequestBody SessionDto sessionDto) {
         log.info(sessionDto);
 
-        Session session = this.sessionService.create(this.sessionMapper.toEntity(sessionDto));
+        try {
+            Session session = this.sessionService.create(this.sessionMapper.toEntity(sessionDto));
+
+            log.info(session);
+            return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
+        } catch (UnknownUsersException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * Creates sessions in bulk from a JSON array of sessions or from CSV (see {@link SessionCsv}). Either every row is
+     * created, or none is and the errors of each rejected row are returned with a 400.
+     */
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> importSessions(@RequestBody List<SessionDto> sessions) {
+        return importResponse(this.sessionImportService.importSessions(sessions));
+    }
+
+    @PostMapping(value = "/import", consumes = TEXT_CSV)
+    public ResponseEntity<?> importCsv(@RequestBody String csv) {
+        try {
+            return importResponse(this.sessionImportService.importSessions(SessionCsv.read(csv, SessionController::parseDate)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        }
+    }
 
-        log.info(session);
-        return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
+    private static ResponseEntity<?> importResponse(SessionImportResponse response) {
+        return response.getErrors().isEmpty()
+                ? ResponseEntity.ok().body(response)
+                : ResponseEntity.badRequest().body(response);
     }
 
     @PutMapping("{id}")
@@ -67,25 +237,79 @@ public class SessionController {
             return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
+        } catch (UnknownUsersException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    /**
+     * JSON Merge Patch (RFC 7396) of a session: only the fields present are changed, a null removing the capacity.
+     * A {@code version} in the patch makes it conditional, a stale one being answered with a 409.
+     */
+    @PatchMapping(value = "{id}", consumes = {MERGE_PATCH_JSON, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<?> patch(@PathVariable("id") String id, @RequestBody JsonNode patch) {
+        try {
+            Long sessionId = Long.parseLong(id);
+            Set<String> fields = new HashSet<>();
+            patch.fieldNames().forEachRemaining(fields::add);
+            if (!patch.isObject() || !PATCHABLE_FIELDS.containsAll(fields)) {
+                return ResponseEntity.badRequest().build();
+            }
+
+            SessionDto changes = this.objectMapper.treeToValue(patch, SessionDto.class);
+            for (String field : fields) {
+                if (!this.validator.validateProperty(changes, field).isEmpty()) {
+                    return ResponseEntity.badRequest().build();
+                }
+            }
+
+            this.sessionService.patch(sessionId, changes, fields);
+            return ResponseEntity.ok().body(this.sessionMapper.viewToDto(this.sessionService.findViewById(sessionId)));
+        } catch (NumberFormatException | JsonProcessingException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (UnknownUsersException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         }
     }
 
     @DeleteMapping("{id}")
     public ResponseEntity<?> save(@PathVariable("id") String id) {
         try {
-            Session session = this.sessionService.getById(Long.valueOf(id));
-
-            if (session == null) {
+            if (!this.sessionService.delete(Long.parseLong(id))) {
                 return ResponseEntity.notFound().build();
             }
 
-            this.sessionService.delete(Long.parseLong(id));
             return ResponseEntity.ok().build();
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    /**
+     * Admin only: deletes every session that took place before {@code before} (ISO date or date-time) and returns how
+     * many were deleted.
+     */
+    @DeleteMapping()
+    public ResponseEntity<?> deleteBefore(@RequestParam("before") String before) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        Object principal = authentication == null ? null : authentication.getPrincipal();
+        if (!(principal instanceof UserDetailsImpl) || !Boolean.TRUE.equals(((UserDetailsImpl) principal).getAdmin())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        try {
+            int deleted = this.sessionService.deleteBefore(parseDate(before), SessionService.PURGE_CHUNK_SIZE);
+
+            return ResponseEntity.ok().body(Collections.singletonMap("deleted", deleted));
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @PostMapping("{id}/participate/{userId}")
     public ResponseEntity<?> participate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
         try {
@@ -97,6 +321,17 @@ public class SessionController {
         }
     }
 
+    @PostMapping("{id}/participate")
+    public ResponseEntity<?> participateAll(@PathVariable("id") String id, @Valid @RequestBody ParticipantsRequest participantsRequest) {
+        try {
+            Map<Long, ParticipationResult> results = this.sessionService.participateAll(Long.parseLong(id), participantsRequest.getUserIds());
+
+            return ResponseEntity.ok().body(results);
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @DeleteMapping("{id}/participate/{userId}")
     public ResponseEntity<?> noLongerParticipate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
         try {
@@ -107,4 +342,54 @@ public class SessionController {
             return ResponseEntity.badRequest().build();
         }
     }
+
+    @PostMapping("{id}/waitlist/{userId}")
+    public ResponseEntity<?> participateOrWait(@PathVariable("id") String id, @PathVariable("userId") String userId) {
+        try {
+            ParticipationStatus status = this.sessionService.participateOrWait(Long.parseLong(id), Long.parseLong(userId));
+
+            return ResponseEntity.ok().body(status);
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @DeleteMapping("{id}/waitlist/{userId}")
+    public ResponseEntity<?> leaveWaitlist(@PathVariable("id") String id, @PathVariable("userId") String userId) {
+        try {
+            this.sessionService.leaveWaitlist(Long.parseLong(id), Long.parseLong(userId));
+
+            return ResponseEntity.ok().build();
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("{id}/waitlist")
+    public ResponseEntity<?> getWaitlist(@PathVariable("id") String id) {
+        try {
+            List<Long> userIds = this.sessionService.getWaitlist(Long.parseLong(id));
+
+            return ResponseEntity.ok().body(userIds);
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Participations do not go through JPA, so the tag covers the participant ids as well as the session fields.
+     */
+    private static String versionOf(SessionDto session) {
+        List<Long> users = session.getUsers() == null ? new ArrayList<>() : new ArrayList<>(session.getUsers());
+        Collections.sort(users);
+        return EntityTags.weakTag(session.getId(), session.getUpdatedAt(), session.getName(), session.getDate(),
+                session.getDescription(), session.getTeacher_id(), session.getCapacity(), users);
+    }
+
+    private static Date parseDate(String value) {
+        LocalDateTime dateTime = value.contains("T")
+                ? LocalDateTime.parse(value)
+                : LocalDate.parse(value).atStartOfDay();
+        return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+    }
 }
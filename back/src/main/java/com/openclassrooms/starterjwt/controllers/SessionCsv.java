@@ -0,0 +1,144 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Reads the CSV form of a session import: a header naming the columns (name, date, teacher_id, description, capacity
+ * and users, in any order), then one session per line. Fields may be quoted, a quote inside a quoted field being
+ * doubled. Participants are user ids separated by ';', and empty fields are read as null.
+ */
+final class SessionCsv {
+    private static final List<String> COLUMNS = Arrays.asList("name", "date", "teacher_id", "description", "capacity", "users");
+
+    private SessionCsv() {
+    }
+
+    /**
+     * Returns one session per line, or throws an {@link IllegalArgumentException} naming the first malformed line.
+     */
+    static List<SessionDto> read(String csv, Function<String, Date> dates) {
+        List<List<String>> records = parse(csv == null ? "" : csv);
+        if (records.isEmpty()) {
+            throw new IllegalArgumentException("header row is missing");
+        }
+
+        List<String> header = new ArrayList<>();
+        for (String column : records.get(0)) {
+            String name = column.trim().toLowerCase(Locale.ROOT);
+            if (!COLUMNS.contains(name) || header.contains(name)) {
+                throw new IllegalArgumentException("unknown or repeated column '" + column + "'");
+            }
+            header.add(name);
+        }
+
+        List<SessionDto> sessions = new ArrayList<>(records.size() - 1);
+        for (List<String> record : records.subList(1, records.size())) {
+            int row = sessions.size() + 1;
+            if (record.size() != header.size()) {
+                throw new IllegalArgumentException("row " + row + ": expected " + header.size() + " fields, got " + record.size());
+            }
+
+            try {
+                sessions.add(toSession(header, record, dates));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("row " + row + ": " + e.getMessage(), e);
+            }
+        }
+        return sessions;
+    }
+
+    private static SessionDto toSession(List<String> header, List<String> record, Function<String, Date> dates) {
+        SessionDto session = new SessionDto();
+        for (int i = 0; i < header.size(); i++) {
+            String value = record.get(i).trim();
+            if (value.isEmpty()) {
+                continue;
+            }
+
+            switch (header.get(i)) {
+                case "name":
+                    session.setName(value);
+                    break;
+                case "date":
+                    session.setDate(dates.apply(value));
+                    break;
+                case "teacher_id":
+                    session.setTeacher_id(Long.valueOf(value));
+                    break;
+                case "description":
+                    session.setDescription(value);
+                    break;
+                case "capacity":
+                    session.setCapacity(Integer.valueOf(value));
+                    break;
+                default:
+                    List<Long> users = new ArrayList<>();
+                    for (String userId : value.split(";")) {
+                        users.add(Long.valueOf(userId.trim()));
+                    }
+                    session.setUsers(users);
+            }
+        }
+        return session;
+    }
+
+    /**
+     * Splits the text into records of fields, skipping blank lines.
+     */
+    private static List<List<String>> parse(String csv) {
+        List<List<String>> records = new ArrayList<>();
+        List<String> record = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean blank = true;
+        for (int i = 0; i < csv.length(); i++) {
+            char c = csv.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < csv.length() && csv.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+                blank = false;
+            } else if (c == ',') {
+                record.add(field.toString());
+                field.setLength(0);
+                blank = false;
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r' && i + 1 < csv.length() && csv.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                if (!blank) {
+                    record.add(field.toString());
+                    records.add(record);
+                }
+                record = new ArrayList<>();
+                field.setLength(0);
+                blank = true;
+            } else {
+                field.append(c);
+                blank = blank && Character.isWhitespace(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        if (!blank) {
+            record.add(field.toString());
+            records.add(record);
+        }
+        return records;
+    }
+}
@@ -30,7 +30,8 @@ public class TeacherController {
                 return ResponseEntity.notFound().build();
             }
 
-            return ResponseEntity.ok().body(this.teacherMapper.toDto(teacher));
+            String etag = EntityTags.weakTag(teacher.getId(), teacher.getUpdatedAt());
+            return EntityTags.ok(etag, teacher.getUpdatedAt()).body(this.teacherMapper.toDto(teacher));
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
         }
@@ -1,7 +1,12 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import com.openclassrooms.starterjwt.dto.SessionPageDto;
+import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.mapper.UserMapper;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.projection.SessionView;
+import com.openclassrooms.starterjwt.services.SessionCursor;
+import com.openclassrooms.starterjwt.services.SessionService;
 import com.openclassrooms.starterjwt.services.UserService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -9,6 +14,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.Objects;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -17,12 +23,18 @@ import java.util.Objects;
 public class UserController {
     private final UserMapper userMapper;
     private final UserService userService;
+    private final SessionService sessionService;
+    private final SessionMapper sessionMapper;
 
 
     public UserController(UserService userService,
-                             UserMapper userMapper) {
+                             UserMapper userMapper,
+                             SessionService sessionService,
+                             SessionMapper sessionMapper) {
         this.userMapper = userMapper;
         this.userService = userService;
+        this.sessionService = sessionService;
+        this.sessionMapper = sessionMapper;
     }
 
     @GetMapping("/{id}")
@@ -34,7 +46,39 @@ public class UserController {
                 return ResponseEntity.notFound().build();
             }
 
-            return ResponseEntity.ok().body(this.userMapper.toDto(user));
+            String etag = EntityTags.weakTag(user.getId(), user.getUpdatedAt());
+            return EntityTags.ok(etag, user.getUpdatedAt()).body(this.userMapper.toDto(user));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/{id}/sessions")
+    public ResponseEntity<?> findSessions(@PathVariable("id") String id,
+                                          @RequestParam(value = "cursor", required = false) String cursor,
+                                          @RequestParam(value = "size", required = false) String size) {
+        try {
+            int pageSize = size == null ? SessionService.DEFAULT_PAGE_SIZE : Integer.parseInt(size);
+            if (pageSize < 1) {
+                return ResponseEntity.badRequest().build();
+            }
+            pageSize = Math.min(pageSize, SessionService.MAX_PAGE_SIZE);
+
+            Long userId = Long.valueOf(id);
+            if (this.userService.findById(userId) == null) {
+                return ResponseEntity.notFound().build();
+            }
+
+            SessionCursor after = cursor == null ? null : SessionCursor.decode(cursor);
+            List<SessionView> sessions = this.sessionService.findPageForUser(userId, after, pageSize + 1);
+
+            String nextCursor = null;
+            if (sessions.size() > pageSize) {
+                sessions = sessions.subList(0, pageSize);
+                nextCursor = SessionCursor.of(sessions.get(pageSize - 1)).encode();
+            }
+
+            return ResponseEntity.ok().body(new SessionPageDto(this.sessionMapper.viewsToDto(sessions), nextCursor));
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
         }
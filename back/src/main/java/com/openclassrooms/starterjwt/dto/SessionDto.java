@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
@@ -36,4 +37,13 @@ public class SessionDto {
     private LocalDateTime createdAt;
 
     private LocalDateTime updatedAt;
+
+    @Min(1)
+    private Integer capacity;
+
+    /**
+     * Version of the session when it was read. When sent back with an update, the update is rejected if the session
+     * has changed since.
+     */
+    private Long version;
 }
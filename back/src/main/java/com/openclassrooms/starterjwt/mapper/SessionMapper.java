@@ -1,8 +1,10 @@
 package com.openclassrooms.starterjwt.mapper;
 
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.exception.UnknownUsersException;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.projection.SessionView;
 import com.openclassrooms.starterjwt.services.TeacherService;
 import com.openclassrooms.starterjwt.services.UserService;
 import org.mapstruct.Mapper;
@@ -11,9 +13,15 @@ import org.mapstruct.Mappings;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Component
@@ -28,10 +36,43 @@ public abstract class SessionMapper implements EntityMapper<SessionDto, Session>
     @Mappings({
             @Mapping(source = "description", target = "description"),
             @Mapping(target = "teacher", expression = "java(sessionDto.getTeacher_id() != null ? this.teacherService.findById(sessionDto.getTeacher_id()) : null)"),
-            @Mapping(target = "users", expression = "java(Optional.ofNullable(sessionDto.getUsers()).orElseGet(Collections::emptyList).stream().map(user_id -> { User user = this.userService.findById(user_id); if (user != null) { return user; } return null; }).collect(Collectors.toList()))"),
+            @Mapping(target = "users", expression = "java(this.toUsers(sessionDto.getUsers()))"),
     })
     public abstract Session toEntity(SessionDto sessionDto);
 
+    /**
+     * Resolves the participants with one query, in the order of their ids, duplicates removed.
+     *
+     * @throws UnknownUsersException listing the ids that match no user
+     */
+    protected List<User> toUsers(List<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Set<Long> ids = new LinkedHashSet<>(userIds);
+        ids.remove(null);
+        Map<Long, User> usersById = new HashMap<>();
+        for (User user : this.userService.findAllById(ids)) {
+            usersById.put(user.getId(), user);
+        }
+
+        List<User> users = new ArrayList<>(ids.size());
+        List<Long> unknown = new ArrayList<>();
+        for (Long id : ids) {
+            User user = usersById.get(id);
+            if (user == null) {
+                unknown.add(id);
+            } else {
+                users.add(user);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            throw new UnknownUsersException(unknown);
+        }
+        return users;
+    }
+
 
     @Mappings({
             @Mapping(source = "description", target = "description"),
@@ -39,4 +80,25 @@ public abstract class SessionMapper implements EntityMapper<SessionDto, Session>
             @Mapping(target = "users", expression = "java(Optional.ofNullable(session.getUsers()).orElseGet(Collections::emptyList).stream().map(u -> u.getId()).collect(Collectors.toList()))"),
     })
     public abstract SessionDto toDto(Session session);
+
+
+    @Mappings({
+            @Mapping(source = "teacherId", target = "teacher_id"),
+            @Mapping(target = "users", expression = "java(toUserIds(view.getUserIds()))"),
+    })
+    public abstract SessionDto viewToDto(SessionView view);
+
+    public abstract List<SessionDto> viewsToDto(List<SessionView> views);
+
+    protected List<Long> toUserIds(String userIds) {
+        List<Long> ids = new ArrayList<>();
+        if (userIds == null || userIds.isEmpty()) {
+            return ids;
+        }
+
+        for (String id : userIds.split(",")) {
+            ids.add(Long.valueOf(id.trim()));
+        }
+        return ids;
+    }
 }
@@ -3,11 +3,15 @@ package com.openclassrooms.starterjwt.models;
 
 import lombok.*;
 import lombok.experimental.Accessors;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.*;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
@@ -16,7 +20,9 @@ import java.util.Date;
 import java.util.List;
 
 @Entity
-@Table(name = "SESSIONS")
+@Table(name = "SESSIONS", indexes = @Index(name = "IDX_SESSIONS_DATE", columnList = "date, id"))
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@DynamicUpdate
 @EntityListeners(AuditingEntityListener.class)
 @Data
 @Accessors(chain = true)
@@ -45,11 +51,27 @@ public class Session {
     @JoinColumn(name = "teacher_id", referencedColumnName = "id")
     private Teacher teacher;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    /**
+     * Maximum number of participants, or null for no limit.
+     */
+    @Min(1)
+    private Integer capacity;
+
+    /**
+     * Number of rows in PARTICIPATE for this session. It is only maintained by the SQL of {@code SessionRepository},
+     * which checks it against the capacity in the same statement, so JPA never writes it.
+     */
+    @Column(name = "participant_count", insertable = false, updatable = false, columnDefinition = "int default 0 not null")
+    private Integer participantCount;
+
+    @ManyToMany(fetch = FetchType.LAZY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @JoinTable(
             name = "PARTICIPATE",
             joinColumns = @JoinColumn( name = "session_id" ),
-            inverseJoinColumns = @JoinColumn( name = "user_id" ) )
+            inverseJoinColumns = @JoinColumn( name = "user_id" ),
+            uniqueConstraints = @UniqueConstraint(columnNames = {"session_id", "user_id"}),
+            indexes = @Index(name = "IDX_PARTICIPATE_USER", columnList = "user_id, session_id"))
     private List<User> users;
 
     @CreatedDate
@@ -59,4 +81,12 @@ public class Session {
     @UpdateTimestamp
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
+
+    /**
+     * Optimistic lock of the columns written through JPA. Participant changes made by the SQL of
+     * {@code SessionRepository} do not bump it.
+     */
+    @Version
+    @Column(columnDefinition = "bigint default 0 not null")
+    private Long version;
 }
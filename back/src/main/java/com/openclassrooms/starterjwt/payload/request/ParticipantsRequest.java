@@ -0,0 +1,20 @@
+package com.openclassrooms.starterjwt.payload.request;
+
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+public class ParticipantsRequest {
+  @NotEmpty
+  @Size(max = 1000)
+  private List<@NotNull Long> userIds;
+
+  public List<Long> getUserIds() {
+    return userIds;
+  }
+
+  public void setUserIds(List<Long> userIds) {
+    this.userIds = userIds;
+  }
+}
@@ -0,0 +1,44 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a session import: the ids of the created sessions, in row order, or the errors of every rejected row,
+ * keyed by row number (starting at 1), in which case nothing was created.
+ */
+public class SessionImportResponse {
+  private List<Long> ids;
+
+  private Map<Integer, List<String>> errors;
+
+  public SessionImportResponse(List<Long> ids, Map<Integer, List<String>> errors) {
+    this.ids = ids;
+    this.errors = errors;
+  }
+
+  public static SessionImportResponse imported(List<Long> ids) {
+    return new SessionImportResponse(ids, Collections.emptyMap());
+  }
+
+  public static SessionImportResponse rejected(Map<Integer, List<String>> errors) {
+    return new SessionImportResponse(Collections.emptyList(), errors);
+  }
+
+  public List<Long> getIds() {
+    return ids;
+  }
+
+  public void setIds(List<Long> ids) {
+    this.ids = ids;
+  }
+
+  public Map<Integer, List<String>> getErrors() {
+    return errors;
+  }
+
+  public void setErrors(Map<Integer, List<String>> errors) {
+    this.errors = errors;
+  }
+}
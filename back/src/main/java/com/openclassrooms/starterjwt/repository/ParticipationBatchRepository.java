@@ -0,0 +1,15 @@
+package com.openclassrooms.starterjwt.repository;
+
+import java.util.List;
+
+/**
+ * Writes of the PARTICIPATE join table that are sent to the database as a single JDBC batch.
+ */
+public interface ParticipationBatchRepository {
+
+    /**
+     * Inserts one participation row per user id, in batches, and returns the number of rows inserted.
+     * A duplicate is rejected by the unique (session_id, user_id) constraint.
+     */
+    int addParticipants(Long sessionId, List<Long> userIds);
+}
@@ -0,0 +1,68 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.Session;
+import org.hibernate.Cache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+public class ParticipationBatchRepositoryImpl implements ParticipationBatchRepository {
+    static final String INSERT_PARTICIPATION = "INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, ?)";
+
+    private static final String PARTICIPANTS_ROLE = Session.class.getName() + ".users";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Cache cache;
+
+    private final int batchSize;
+
+    public ParticipationBatchRepositoryImpl(JdbcTemplate jdbcTemplate,
+                                            EntityManagerFactory entityManagerFactory,
+                                            @Value("${oc.app.participation.batchSize:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cache = entityManagerFactory.getCache().unwrap(Cache.class);
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    @Transactional
+    public int addParticipants(Long sessionId, List<Long> userIds) {
+        int[][] counts = this.jdbcTemplate.batchUpdate(INSERT_PARTICIPATION, userIds, this.batchSize, (ps, userId) -> {
+            ps.setLong(1, sessionId);
+            ps.setLong(2, userId);
+        });
+
+        evictParticipantsAfterCompletion(sessionId);
+
+        int inserted = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                // rewritten MySQL batches report SUCCESS_NO_INFO instead of a row count
+                inserted += count < 0 ? 1 : count;
+            }
+        }
+        return inserted;
+    }
+
+    /**
+     * JDBC writes are invisible to Hibernate, so the cached participant list of the session is dropped by hand,
+     * right away and again once the transaction is over, so that a concurrent load cannot leave the old list cached.
+     */
+    private void evictParticipantsAfterCompletion(Long sessionId) {
+        this.cache.evictCollectionData(PARTICIPANTS_ROLE, sessionId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.evictCollectionData(PARTICIPANTS_ROLE, sessionId);
+                }
+            });
+        }
+    }
+}
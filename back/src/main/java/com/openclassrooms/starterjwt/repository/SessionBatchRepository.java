@@ -0,0 +1,17 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.Session;
+
+import java.util.List;
+
+/**
+ * Inserts of whole sessions that are sent to the database as JDBC batches.
+ */
+public interface SessionBatchRepository {
+
+    /**
+     * Inserts the sessions, then their participations, in batches, and returns the generated ids in the order of
+     * {@code sessions}. Only the ids of the teacher and of the users are read, and the entities are not attached.
+     */
+    List<Long> insertSessions(List<Session> sessions);
+}
@@ -0,0 +1,99 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SessionBatchRepositoryImpl implements SessionBatchRepository {
+    private static final String INSERT_SESSION = "INSERT INTO SESSIONS "
+            + "(name, date, description, teacher_id, capacity, participant_count, created_at, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final int batchSize;
+
+    public SessionBatchRepositoryImpl(JdbcTemplate jdbcTemplate,
+                                      @Value("${oc.app.sessionImport.batchSize:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sessions keep their IDENTITY ids, which Hibernate cannot batch, so the rows are written with plain JDBC batches
+     * and the ids read back from the generated keys of each batch. Rewritten MySQL batches are a single multi-row
+     * INSERT, whose auto-increment values are consecutive, so the keys come back in row order.
+     */
+    @Override
+    @Transactional
+    public List<Long> insertSessions(List<Session> sessions) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Long> ids = new ArrayList<>(sessions.size());
+        for (int from = 0; from < sessions.size(); from += this.batchSize) {
+            List<Session> batch = sessions.subList(from, Math.min(from + this.batchSize, sessions.size()));
+            ids.addAll(insertBatch(batch, now));
+        }
+        if (ids.size() != sessions.size()) {
+            throw new IncorrectResultSizeDataAccessException(sessions.size(), ids.size());
+        }
+
+        List<long[]> participations = new ArrayList<>();
+        for (int i = 0; i < sessions.size(); i++) {
+            for (User user : participantsOf(sessions.get(i))) {
+                participations.add(new long[]{ids.get(i), user.getId()});
+            }
+        }
+        this.jdbcTemplate.batchUpdate(ParticipationBatchRepositoryImpl.INSERT_PARTICIPATION, participations, this.batchSize,
+                (ps, participation) -> {
+                    ps.setLong(1, participation[0]);
+                    ps.setLong(2, participation[1]);
+                });
+        return ids;
+    }
+
+    private List<Long> insertBatch(List<Session> batch, Timestamp now) {
+        PreparedStatementCreator insert = connection -> connection.prepareStatement(INSERT_SESSION, Statement.RETURN_GENERATED_KEYS);
+        return this.jdbcTemplate.execute(insert, (PreparedStatement ps) -> {
+            for (Session session : batch) {
+                ps.setString(1, session.getName());
+                ps.setTimestamp(2, new Timestamp(session.getDate().getTime()));
+                ps.setString(3, session.getDescription());
+                ps.setLong(4, session.getTeacher().getId());
+                if (session.getCapacity() == null) {
+                    ps.setNull(5, Types.INTEGER);
+                } else {
+                    ps.setInt(5, session.getCapacity());
+                }
+                ps.setInt(6, participantsOf(session).size());
+                ps.setTimestamp(7, now);
+                ps.setTimestamp(8, now);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+
+            List<Long> keys = new ArrayList<>(batch.size());
+            try (ResultSet generatedKeys = ps.getGeneratedKeys()) {
+                while (generatedKeys.next()) {
+                    keys.add(generatedKeys.getLong(1));
+                }
+            }
+            return keys;
+        });
+    }
+
+    private static List<User> participantsOf(Session session) {
+        return session.getUsers() == null ? new ArrayList<>() : session.getUsers();
+    }
+}
@@ -1,9 +1,236 @@
 package com.openclassrooms.starterjwt.repository;
 
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.repository.projection.SessionView;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES;
 
 @Repository
-public interface SessionRepository  extends JpaRepository<Session, Long> {
+public interface SessionRepository  extends JpaRepository<Session, Long>, ParticipationBatchRepository, SessionBatchRepository {
+
+    /**
+     * Reads sessions straight into {@link SessionView} rows, participant ids being aggregated by the database,
+     * so neither the users nor the sessions themselves are loaded into the persistence context.
+     */
+    String SESSION_VIEW_SELECT = "SELECT s.id AS id, s.name AS name, s.date AS date, s.description AS description, "
+            + "s.teacher_id AS teacherId, s.capacity AS capacity, GROUP_CONCAT(p.user_id) AS userIds, "
+            + "s.created_at AS createdAt, s.updated_at AS updatedAt, s.version AS version "
+            + "FROM SESSIONS s LEFT JOIN PARTICIPATE p ON p.session_id = s.id ";
+
+    String SESSION_VIEW_GROUP_BY = "GROUP BY s.id, s.name, s.date, s.description, s.teacher_id, s.capacity, s.created_at, s.updated_at, "
+            + "s.version ";
+
+    /**
+     * Restricts {@link #SESSION_VIEW_SELECT} to the sessions of one user, starting from the (user_id, session_id) index.
+     */
+    String USER_PARTICIPATION_JOIN = "JOIN PARTICIPATE mine ON mine.session_id = s.id AND mine.user_id = :userId ";
+
+    /**
+     * Native writes name the table they touch, so Hibernate only invalidates the second-level cache regions of that
+     * table instead of the whole cache.
+     */
+    String SESSIONS_TABLE = "SESSIONS";
+
+    String PARTICIPATE_TABLE = "PARTICIPATE";
+
+    String STREAM_FETCH_SIZE = "500";
+
+    @Override
+    @EntityGraph(attributePaths = {"teacher", "users"})
+    Optional<Session> findById(Long id);
+
+    @Query(value = SESSION_VIEW_SELECT + SESSION_VIEW_GROUP_BY + "ORDER BY s.id", nativeQuery = true)
+    List<SessionView> findAllViews();
+
+    @Query(value = SESSION_VIEW_SELECT + "WHERE s.id = :id " + SESSION_VIEW_GROUP_BY, nativeQuery = true)
+    Optional<SessionView> findViewById(@Param("id") Long id);
+
+    @Query(value = SESSION_VIEW_SELECT + SESSION_VIEW_GROUP_BY + "ORDER BY s.date, s.id LIMIT :limit", nativeQuery = true)
+    List<SessionView> findFirstViewPage(@Param("limit") int limit);
+
+    @Query(value = SESSION_VIEW_SELECT
+            + "WHERE s.date > :date OR (s.date = :date AND s.id > :id) "
+            + SESSION_VIEW_GROUP_BY + "ORDER BY s.date, s.id LIMIT :limit", nativeQuery = true)
+    List<SessionView> findViewPageAfter(@Param("date") Date date, @Param("id") Long id, @Param("limit") int limit);
+
+    @Query(value = SESSION_VIEW_SELECT + USER_PARTICIPATION_JOIN + SESSION_VIEW_GROUP_BY + "ORDER BY s.date, s.id LIMIT :limit",
+            nativeQuery = true)
+    List<SessionView> findFirstViewPageForUser(@Param("userId") Long userId, @Param("limit") int limit);
+
+    @Query(value = SESSION_VIEW_SELECT + USER_PARTICIPATION_JOIN
+            + "WHERE s.date > :date OR (s.date = :date AND s.id > :id) "
+            + SESSION_VIEW_GROUP_BY + "ORDER BY s.date, s.id LIMIT :limit", nativeQuery = true)
+    List<SessionView> findViewPageForUserAfter(@Param("userId") Long userId, @Param("date") Date date, @Param("id") Long id,
+                                               @Param("limit") int limit);
+
+    /**
+     * Sessions taking place at or after {@code from}, in date order, read along the (date, id) index.
+     */
+    @Query(value = SESSION_VIEW_SELECT + "WHERE s.date >= :from " + SESSION_VIEW_GROUP_BY + "ORDER BY s.date, s.id",
+            nativeQuery = true)
+    List<SessionView> findViewsFrom(@Param("from") Date from);
+
+    /**
+     * Same as {@link #findViewsFrom(Date)}, for sessions before {@code to} (exclusive).
+     */
+    @Query(value = SESSION_VIEW_SELECT + "WHERE s.date >= :from AND s.date < :to " + SESSION_VIEW_GROUP_BY + "ORDER BY s.date, s.id",
+            nativeQuery = true)
+    List<SessionView> findViewsBetween(@Param("from") Date from, @Param("to") Date to);
+
+    /**
+     * Every session in id order, for exports of the whole catalog. Results are streamed, {@link #STREAM_FETCH_SIZE}
+     * rows at a time (a server-side cursor on MySQL, enabled by useCursorFetch in the datasource URL), and must be
+     * consumed in a transaction.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query(value = SESSION_VIEW_SELECT + SESSION_VIEW_GROUP_BY + "ORDER BY s.id", nativeQuery = true)
+    Stream<SessionView> streamAllViews();
+
+    /**
+     * Adds a single participation row. A duplicate is rejected by the unique (session_id, user_id) constraint.
+     */
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = PARTICIPATE_TABLE))
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO PARTICIPATE (session_id, user_id) VALUES (:sessionId, :userId)", nativeQuery = true)
+    int addParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = PARTICIPATE_TABLE))
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM PARTICIPATE WHERE session_id = :sessionId AND user_id = :userId", nativeQuery = true)
+    int removeParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    /**
+     * Takes one seat if the session is not full, as a single compare-and-set on the session row.
+     * Returns 0 when the session is full or does not exist.
+     * Seat changes also bump updated_at, so the Last-Modified of a session follows its participants.
+     */
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = SESSIONS_TABLE))
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE SESSIONS SET participant_count = participant_count + 1, updated_at = CURRENT_TIMESTAMP "
+            + "WHERE id = :id AND (capacity IS NULL OR participant_count < capacity)", nativeQuery = true)
+    int reserveSeat(@Param("id") Long id);
+
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = SESSIONS_TABLE))
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE SESSIONS SET participant_count = participant_count - 1, updated_at = CURRENT_TIMESTAMP "
+            + "WHERE id = :id AND participant_count > 0", nativeQuery = true)
+    int releaseSeat(@Param("id") Long id);
+
+    /**
+     * Recounts the participants after the whole participant list of a session has been written through JPA.
+     */
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = SESSIONS_TABLE))
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE SESSIONS SET participant_count = (SELECT COUNT(*) FROM PARTICIPATE p WHERE p.session_id = :id) "
+            + "WHERE id = :id", nativeQuery = true)
+    int refreshParticipantCount(@Param("id") Long id);
+
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = PARTICIPATE_TABLE))
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM PARTICIPATE WHERE session_id = :sessionId AND user_id IN :userIds", nativeQuery = true)
+    int removeParticipants(@Param("sessionId") Long sessionId, @Param("userIds") Collection<Long> userIds);
+
+    @Query("SELECT s.version FROM Session s WHERE s.id = :id")
+    Long findVersionById(@Param("id") Long id);
+
+    /**
+     * Ids of the sessions that took place before {@code before}, oldest first, one page of them.
+     * Read through JPQL so that the ids are Longs whatever the column type.
+     */
+    @Query("SELECT s.id FROM Session s WHERE s.date < :before ORDER BY s.date, s.id")
+    List<Long> findIdsBefore(@Param("before") Date before, Pageable page);
+
+    /**
+     * Deletes every participation of the given sessions with a single statement, before the sessions themselves are
+     * deleted with {@link #deleteSessions(Collection)}.
+     */
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = PARTICIPATE_TABLE))
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM PARTICIPATE WHERE session_id IN :sessionIds", nativeQuery = true)
+    int removeAllParticipants(@Param("sessionIds") Collection<Long> sessionIds);
+
+    /**
+     * Deletes the sessions without loading them, and returns how many existed.
+     */
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = SESSIONS_TABLE))
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM SESSIONS WHERE id IN :ids", nativeQuery = true)
+    int deleteSessions(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Ids of the sessions a user takes part in, one page of them, read along the (user_id, session_id) index.
+     */
+    @Query("SELECT s.id FROM Session s JOIN s.users u WHERE u.id = :userId ORDER BY s.id")
+    List<Long> findSessionIdsOfUser(@Param("userId") Long userId, Pageable page);
+
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = PARTICIPATE_TABLE))
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM PARTICIPATE WHERE user_id = :userId AND session_id IN :sessionIds", nativeQuery = true)
+    int removeUserFromSessions(@Param("userId") Long userId, @Param("sessionIds") Collection<Long> sessionIds);
+
+    /**
+     * Same as {@link #releaseSeat(Long)} for several sessions at once.
+     */
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = SESSIONS_TABLE))
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE SESSIONS SET participant_count = participant_count - 1, updated_at = CURRENT_TIMESTAMP "
+            + "WHERE id IN :ids AND participant_count > 0", nativeQuery = true)
+    int releaseSeats(@Param("ids") Collection<Long> ids);
+
+    @Query(value = "SELECT COUNT(*) FROM PARTICIPATE WHERE session_id = :sessionId AND user_id = :userId", nativeQuery = true)
+    long countParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    @Query("SELECT u.id FROM Session s JOIN s.users u WHERE s.id = :sessionId AND u.id IN :userIds")
+    List<Long> findParticipantIds(@Param("sessionId") Long sessionId, @Param("userIds") Collection<Long> userIds);
+
+    /**
+     * Locks the session row and returns the number of seats left, {@link Integer#MAX_VALUE} when the session has no capacity,
+     * or null when it does not exist.
+     * Single bookings and cancellations take it before {@link #reserveSeat(Long)} or {@link #releaseSeat(Long)}, so
+     * the seats stay free until the caller commits.
+     */
+    @Query(value = "SELECT COALESCE(capacity - participant_count, 2147483647) FROM SESSIONS WHERE id = :id FOR UPDATE",
+            nativeQuery = true)
+    Integer lockFreeSeats(@Param("id") Long id);
+
+    /**
+     * Takes the row locks of {@link #lockFreeSeats(Long)} on several sessions, in id order so that two callers locking
+     * overlapping sessions cannot deadlock. Returns the ids of the sessions that exist.
+     */
+    @Query(value = "SELECT id FROM SESSIONS WHERE id IN :ids ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Long> lockSessions(@Param("ids") Collection<Long> ids);
+
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = SESSIONS_TABLE))
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE SESSIONS SET participant_count = participant_count + :count, updated_at = CURRENT_TIMESTAMP "
+            + "WHERE id = :id", nativeQuery = true)
+    int addSeats(@Param("id") Long id, @Param("count") int count);
 }
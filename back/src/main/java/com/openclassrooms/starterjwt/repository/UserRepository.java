@@ -1,15 +1,71 @@
 package com.openclassrooms.starterjwt.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.projection.UserCredentials;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
   Optional<User> findByEmail(String email);
 
+  /**
+   * Everything the login needs about an active user, in one narrow query.
+   */
+  @Query("SELECT u.id AS id, u.email AS email, u.firstName AS firstName, u.lastName AS lastName, "
+      + "u.password AS password, u.admin AS admin FROM User u WHERE u.email = :email AND u.deletedAt IS NULL")
+  Optional<UserCredentials> findCredentialsByEmail(@Param("email") String email);
+
   Boolean existsByEmail(String email); 
+
+  /**
+   * Replaces the password hash only if it is still {@code currentHash}, so a concurrent password change is never overwritten.
+   */
+  @Modifying
+  @Transactional
+  @Query("UPDATE User u SET u.password = :newHash WHERE u.id = :id AND u.password = :currentHash")
+  int updatePassword(@Param("id") Long id, @Param("currentHash") String currentHash, @Param("newHash") String newHash);
+
+  /**
+   * Marks the account as deleted; returns 0 when it does not exist or was already deleted.
+   */
+  @Modifying
+  @Transactional
+  @Query("UPDATE User u SET u.deletedAt = CURRENT_TIMESTAMP WHERE u.id = :id AND u.deletedAt IS NULL")
+  int markDeleted(@Param("id") Long id);
+
+  /**
+   * Ids of the accounts deleted at or before {@code before} and still waiting for their purge, oldest deletion first.
+   */
+  @Query("SELECT u.id FROM User u WHERE u.deletedAt <= :before ORDER BY u.deletedAt, u.id")
+  List<Long> findDeletedIds(@Param("before") LocalDateTime before, Pageable page);
+
+  long countByDeletedAtIsNotNull();
+
+  boolean existsByIdAndDeletedAtIsNull(Long id);
+
+  /**
+   * The given users that are not deleted, with a single IN query. The ids must not be empty.
+   */
+  @Query("SELECT u FROM User u WHERE u.id IN :ids AND u.deletedAt IS NULL")
+  List<User> findAllActiveById(@Param("ids") Collection<Long> ids);
+
+  /**
+   * Removes the row of a deleted account, which must no longer be referenced by any participation.
+   */
+  @Modifying
+  @Transactional
+  @Query("DELETE FROM User u WHERE u.id = :id AND u.deletedAt IS NOT NULL")
+  int deleteMarked(@Param("id") Long id);
 }
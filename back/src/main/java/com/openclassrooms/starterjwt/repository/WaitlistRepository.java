@@ -0,0 +1,48 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface WaitlistRepository extends JpaRepository<WaitlistEntry, Long> {
+
+    List<WaitlistEntry> findBySessionIdOrderByIdAsc(Long sessionId);
+
+    Optional<WaitlistEntry> findBySessionIdAndUserId(Long sessionId, Long userId);
+
+    boolean existsBySessionId(Long sessionId);
+
+    /**
+     * Locks the first entry of the waitlist of a session, read through the (session_id, id) index, so that two
+     * promotions cannot take the same user.
+     */
+    @Query(value = "SELECT * FROM WAITLIST WHERE session_id = :sessionId ORDER BY id LIMIT 1 FOR UPDATE", nativeQuery = true)
+    Optional<WaitlistEntry> lockFirst(@Param("sessionId") Long sessionId);
+
+    /**
+     * Deletes one entry and tells whether it was still there, so that concurrent promotions never hand out the same entry.
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM WaitlistEntry w WHERE w.id = :id")
+    int deleteEntry(@Param("id") Long id);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM WaitlistEntry w WHERE w.sessionId IN :sessionIds")
+    int deleteBySessionIds(@Param("sessionIds") Collection<Long> sessionIds);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM WaitlistEntry w WHERE w.userId = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+}
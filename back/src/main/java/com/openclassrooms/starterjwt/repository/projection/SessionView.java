@@ -0,0 +1,30 @@
+package com.openclassrooms.starterjwt.repository.projection;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+
+/**
+ * Flat, read-only row of a session with its participant ids aggregated by the database
+ * as a comma separated list, so no {@code User} entity has to be loaded to render a {@code SessionDto}.
+ */
+public interface SessionView {
+    Long getId();
+
+    String getName();
+
+    Date getDate();
+
+    String getDescription();
+
+    Long getTeacherId();
+
+    Integer getCapacity();
+
+    String getUserIds();
+
+    LocalDateTime getCreatedAt();
+
+    LocalDateTime getUpdatedAt();
+
+    Long getVersion();
+}
@@ -0,0 +1,18 @@
+package com.openclassrooms.starterjwt.repository.projection;
+
+/**
+ * The columns of a user needed to log in and build the token response, read without loading a {@code User} entity.
+ */
+public interface UserCredentials {
+    Long getId();
+
+    String getEmail();
+
+    String getFirstName();
+
+    String getLastName();
+
+    String getPassword();
+
+    boolean isAdmin();
+}
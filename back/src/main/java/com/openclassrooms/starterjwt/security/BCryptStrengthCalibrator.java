@@ -0,0 +1,35 @@
+package com.openclassrooms.starterjwt.security;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Picks the BCrypt strength whose hashing time on this machine is closest to, without exceeding,
+ * a target latency. Each extra round doubles the cost, so only the minimum strength is measured.
+ */
+public final class BCryptStrengthCalibrator {
+  private static final String SAMPLE = "calibration-password";
+
+  private BCryptStrengthCalibrator() {
+  }
+
+  public static int calibrate(int minStrength, int maxStrength, long targetLatencyMs) {
+    if (targetLatencyMs <= 0 || maxStrength <= minStrength) {
+      return minStrength;
+    }
+
+    BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(minStrength);
+    encoder.encode(SAMPLE);
+
+    long start = System.nanoTime();
+    encoder.encode(SAMPLE);
+    long estimatedNanos = Math.max(System.nanoTime() - start, 1L);
+
+    long targetNanos = targetLatencyMs * 1_000_000L;
+    int strength = minStrength;
+    while (strength < maxStrength && estimatedNanos * 2 <= targetNanos) {
+      strength++;
+      estimatedNanos *= 2;
+    }
+    return strength;
+  }
+}
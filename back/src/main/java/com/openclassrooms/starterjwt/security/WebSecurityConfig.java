@@ -1,6 +1,12 @@
 package com.openclassrooms.starterjwt.security;
 
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -11,6 +17,7 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
@@ -31,6 +38,19 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
   @Autowired
   private AuthEntryPointJwt unauthorizedHandler;
 
+  private static final Logger logger = LoggerFactory.getLogger(WebSecurityConfig.class);
+
+  private static final String BCRYPT = "bcrypt";
+
+  @Value("${oc.app.bcryptStrength:10}")
+  private int bcryptStrength;
+
+  @Value("${oc.app.bcryptMaxStrength:14}")
+  private int bcryptMaxStrength;
+
+  @Value("${oc.app.bcryptTargetLatencyMs:0}")
+  private long bcryptTargetLatencyMs;
+
   @Bean
   public AuthTokenFilter authenticationJwtTokenFilter() {
     return new AuthTokenFilter();
@@ -47,9 +67,22 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
     return super.authenticationManagerBean();
   }
 
+  /**
+   * Hashes with BCrypt at the strength calibrated for this machine and writes the encoder id in front of the hash.
+   * Hashes stored before, without id, are still checked with BCrypt and get upgraded on the next login.
+   */
   @Bean
   public PasswordEncoder passwordEncoder() {
-    return new BCryptPasswordEncoder();
+    int strength = BCryptStrengthCalibrator.calibrate(bcryptStrength, bcryptMaxStrength, bcryptTargetLatencyMs);
+    logger.info("Using BCrypt strength {}", strength);
+
+    BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(strength);
+    Map<String, PasswordEncoder> encoders = new HashMap<>();
+    encoders.put(BCRYPT, bcrypt);
+
+    DelegatingPasswordEncoder passwordEncoder = new DelegatingPasswordEncoder(BCRYPT, encoders);
+    passwordEncoder.setDefaultPasswordEncoderForMatches(bcrypt);
+    return passwordEncoder;
   }
 
   @Override
@@ -17,8 +17,13 @@ import org.springframework.security.web.authentication.WebAuthenticationDetailsS
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import com.openclassrooms.starterjwt.security.services.UserDenyList;
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 
+import io.jsonwebtoken.Claims;
+
 public class AuthTokenFilter extends OncePerRequestFilter {
   @Autowired
   private JwtUtils jwtUtils;
@@ -26,6 +31,12 @@ public class AuthTokenFilter extends OncePerRequestFilter {
   @Autowired
   private UserDetailsServiceImpl userDetailsService;
 
+  @Autowired
+  private UserDetailsCache userDetailsCache;
+
+  @Autowired
+  private UserDenyList userDenyList;
+
   private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
   @Override
@@ -33,18 +44,20 @@ public class AuthTokenFilter extends OncePerRequestFilter {
       throws ServletException, IOException {
     try {
       String jwt = parseJwt(request);
-      if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-        String username = jwtUtils.getUserNameFromJwtToken(jwt);
-
-        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-        UsernamePasswordAuthenticationToken authentication =
-            new UsernamePasswordAuthenticationToken(
-                userDetails,
-                null,
-                userDetails.getAuthorities());
-        authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-
-        SecurityContextHolder.getContext().setAuthentication(authentication);
+      Claims claims = jwt == null ? null : jwtUtils.verifyJwtToken(jwt);
+      if (claims != null) {
+        UserDetails userDetails = resolvePrincipal(claims);
+
+        if (userDetails != null) {
+          UsernamePasswordAuthenticationToken authentication =
+              new UsernamePasswordAuthenticationToken(
+                  userDetails,
+                  null,
+                  userDetails.getAuthorities());
+          authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+          SecurityContextHolder.getContext().setAuthentication(authentication);
+        }
       }
     } catch (Exception e) {
       logger.error("Cannot set user authentication: {}", e);
@@ -53,7 +66,32 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     filterChain.doFilter(request, response);
   }
 
-  private String parseJwt(HttpServletRequest request) {
+  private UserDetails resolvePrincipal(Claims claims) {
+    if (jwtUtils.isStatelessPrincipal()) {
+      UserDetailsImpl principal = jwtUtils.getPrincipalFromClaims(claims);
+      if (principal != null) {
+        return userDenyList.isRevoked(principal.getId()) ? null : principal;
+      }
+    }
+
+    String username = claims.getSubject();
+
+    UserDetailsImpl userDetails = userDetailsCache.get(username);
+    if (userDetails == null) {
+      userDetails = (UserDetailsImpl) userDetailsService.loadUserByUsername(username);
+      userDetailsCache.put(username, userDetails);
+    }
+
+    // Checked after the put: a deletion that ran during the load may have evicted the user before it was cached,
+    // but it has revoked them too
+    if (userDenyList.isRevoked(userDetails.getId())) {
+      userDetailsCache.evict(username);
+      return null;
+    }
+    return userDetails;
+  }
+
+  String parseJwt(HttpServletRequest request) {
     String headerAuth = request.getHeader("Authorization");
 
     if (StringUtils.hasText(headerAuth) && headerAuth.startsWith("Bearer ")) {
@@ -22,26 +22,97 @@ public class JwtUtils {
   @Value("${oc.app.jwtExpirationMs}")
   private int jwtExpirationMs;
 
+  @Value("${oc.app.jwtStatelessPrincipal:false}")
+  private boolean statelessPrincipal;
+
+  static final String CLAIM_ID = "id";
+
+  static final String CLAIM_FIRST_NAME = "firstName";
+
+  static final String CLAIM_LAST_NAME = "lastName";
+
+  static final String CLAIM_ADMIN = "admin";
+
+  static final int VERIFIED_TOKEN_CACHE_SIZE = 1024;
+
+  private final VerifiedTokenCache verifiedTokens = new VerifiedTokenCache(VERIFIED_TOKEN_CACHE_SIZE, System::currentTimeMillis);
+
   public String generateJwtToken(Authentication authentication) {
 
     UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
 
-    return Jwts.builder()
+    JwtBuilder builder = Jwts.builder()
         .setSubject((userPrincipal.getUsername()))
         .setIssuedAt(new Date())
-        .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
+        .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs));
+
+    if (statelessPrincipal) {
+      builder.claim(CLAIM_ID, userPrincipal.getId())
+          .claim(CLAIM_FIRST_NAME, userPrincipal.getFirstName())
+          .claim(CLAIM_LAST_NAME, userPrincipal.getLastName())
+          .claim(CLAIM_ADMIN, Boolean.TRUE.equals(userPrincipal.getAdmin()));
+    }
+
+    return builder
         .signWith(SignatureAlgorithm.HS512, jwtSecret)
         .compact();
   }
 
+  /**
+   * Whether tokens carry the whole principal, so that requests can be authenticated without a database lookup.
+   */
+  public boolean isStatelessPrincipal() {
+    return statelessPrincipal;
+  }
+
+  /**
+   * Rebuilds the principal from verified claims, or returns null when the token was issued
+   * without them (e.g. before stateless mode was turned on).
+   */
+  public UserDetailsImpl getPrincipalFromClaims(Claims claims) {
+    Long id = claims.get(CLAIM_ID, Long.class);
+    if (id == null) {
+      return null;
+    }
+
+    return UserDetailsImpl
+        .builder()
+        .id(id)
+        .username(claims.getSubject())
+        .firstName(claims.get(CLAIM_FIRST_NAME, String.class))
+        .lastName(claims.get(CLAIM_LAST_NAME, String.class))
+        .admin(Boolean.TRUE.equals(claims.get(CLAIM_ADMIN, Boolean.class)))
+        .build();
+  }
+
+  /**
+   * Verifies the token and returns its claims, or null when it is not valid. The signature of a token is only
+   * checked once: its claims are then served from a small cache until the token expires.
+   */
+  public Claims verifyJwtToken(String token) {
+    Claims claims = verifiedTokens.get(token);
+    if (claims != null) {
+      return claims;
+    }
+
+    claims = parseClaims(token);
+    if (claims != null) {
+      verifiedTokens.put(token, claims);
+    }
+    return claims;
+  }
+
   public String getUserNameFromJwtToken(String token) {
     return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody().getSubject();
   }
 
   public boolean validateJwtToken(String authToken) {
+    return parseClaims(authToken) != null;
+  }
+
+  private Claims parseClaims(String authToken) {
     try {
-      Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-      return true;
+      return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken).getBody();
     } catch (SignatureException e) {
       logger.error("Invalid JWT signature: {}", e.getMessage());
     } catch (MalformedJwtException e) {
@@ -54,6 +125,6 @@ public class JwtUtils {
       logger.error("JWT claims string is empty: {}", e.getMessage());
     }
 
-    return false;
+    return null;
   }
 }
@@ -0,0 +1,85 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * Small LRU map from the SHA-256 digest of recently verified tokens to their claims. An entry is only
+ * served until the expiry of its token, after which the token goes through full verification again
+ * (and is rejected). Tokens are never stored, only their digests.
+ */
+class VerifiedTokenCache {
+  private final LongSupplier clock;
+
+  private final LinkedHashMap<String, Entry> entries;
+
+  VerifiedTokenCache(int maxSize, LongSupplier clock) {
+    this.clock = clock;
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  Claims get(String token) {
+    String digest = digest(token);
+    synchronized (entries) {
+      Entry entry = entries.get(digest);
+      if (entry == null) {
+        return null;
+      }
+
+      if (entry.expiresAt <= clock.getAsLong()) {
+        entries.remove(digest);
+        return null;
+      }
+      return entry.claims;
+    }
+  }
+
+  void put(String token, Claims claims) {
+    if (claims.getExpiration() == null) {
+      return;
+    }
+
+    String digest = digest(token);
+    synchronized (entries) {
+      entries.put(digest, new Entry(claims, claims.getExpiration().getTime()));
+    }
+  }
+
+  int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  private static String digest(String token) {
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+      return Base64.getEncoder().encodeToString(hash);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static final class Entry {
+    private final Claims claims;
+
+    private final long expiresAt;
+
+    private Entry(Claims claims, long expiresAt) {
+      this.claims = claims;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
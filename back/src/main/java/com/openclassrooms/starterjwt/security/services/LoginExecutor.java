@@ -0,0 +1,92 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded pool running the password hashing of logins and password upgrades, so that it does not hold
+ * request threads. When the queue is full new work is rejected instead of piling up.
+ * The queue and rejection counts are exported over JMX.
+ */
+@Component
+@ManagedResource(objectName = "com.openclassrooms.starterjwt:type=LoginExecutor")
+public class LoginExecutor {
+  private final ThreadPoolExecutor executor;
+
+  private final AtomicLong rejected = new AtomicLong();
+
+  public LoginExecutor(@Value("${oc.app.login.threads:0}") int threads,
+                       @Value("${oc.app.login.queueCapacity:200}") int queueCapacity) {
+    int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    AtomicInteger counter = new AtomicInteger();
+    ThreadFactory threadFactory = runnable -> {
+      Thread thread = new Thread(runnable, "login-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+
+    this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity), threadFactory, (runnable, pool) -> {
+          rejected.incrementAndGet();
+          throw new RejectedExecutionException("Login executor is saturated");
+        });
+  }
+
+  /**
+   * @throws RejectedExecutionException when the queue is full
+   */
+  public <T> CompletableFuture<T> submit(Supplier<T> task) {
+    return CompletableFuture.supplyAsync(task, executor);
+  }
+
+  /**
+   * @throws RejectedExecutionException when the queue is full
+   */
+  public void execute(Runnable task) {
+    executor.execute(task);
+  }
+
+  @ManagedAttribute
+  public int getQueueDepth() {
+    return executor.getQueue().size();
+  }
+
+  @ManagedAttribute
+  public int getQueueRemainingCapacity() {
+    return executor.getQueue().remainingCapacity();
+  }
+
+  @ManagedAttribute
+  public int getActiveCount() {
+    return executor.getActiveCount();
+  }
+
+  @ManagedAttribute
+  public long getCompletedTaskCount() {
+    return executor.getCompletedTaskCount();
+  }
+
+  @ManagedAttribute
+  public long getRejectedCount() {
+    return rejected.get();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,56 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import com.openclassrooms.starterjwt.repository.UserRepository;
+
+/**
+ * Re-hashes, in the background, the passwords stored with an outdated encoding or a lower BCrypt strength.
+ * It runs after a successful login, the only moment the raw password is known.
+ */
+@Service
+public class PasswordUpgrader {
+  private static final Logger logger = LoggerFactory.getLogger(PasswordUpgrader.class);
+
+  private final PasswordEncoder passwordEncoder;
+
+  private final UserRepository userRepository;
+
+  private final UserDetailsCache userDetailsCache;
+
+  private final LoginExecutor loginExecutor;
+
+  PasswordUpgrader(PasswordEncoder passwordEncoder,
+                   UserRepository userRepository,
+                   UserDetailsCache userDetailsCache,
+                   LoginExecutor loginExecutor) {
+    this.passwordEncoder = passwordEncoder;
+    this.userRepository = userRepository;
+    this.userDetailsCache = userDetailsCache;
+    this.loginExecutor = loginExecutor;
+  }
+
+  public void upgradeIfNeeded(UserDetailsImpl user, String rawPassword) {
+    if (user.getPassword() == null || !passwordEncoder.upgradeEncoding(user.getPassword())) {
+      return;
+    }
+
+    try {
+      loginExecutor.execute(() -> upgrade(user, rawPassword));
+    } catch (RejectedExecutionException e) {
+      logger.debug("Password upgrade of user {} postponed: {}", user.getId(), e.getMessage());
+    }
+  }
+
+  void upgrade(UserDetailsImpl user, String rawPassword) {
+    String hash = passwordEncoder.encode(rawPassword);
+    if (userRepository.updatePassword(user.getId(), user.getPassword(), hash) > 0) {
+      userDetailsCache.evict(user.getUsername());
+    }
+  }
+}
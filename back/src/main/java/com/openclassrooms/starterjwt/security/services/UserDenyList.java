@@ -0,0 +1,56 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory list of users whose tokens must no longer be accepted. It is checked on every request, whether the
+ * principal is read from the token or from the cache, which a request racing the deletion may have refilled.
+ * An entry only has to outlive the tokens issued before it, so it is kept for one token lifetime.
+ */
+@Component
+public class UserDenyList {
+  private final long retentionMs;
+
+  private final LongSupplier clock;
+
+  private final Map<Long, Long> revokedUntil = new ConcurrentHashMap<>();
+
+  @Autowired
+  public UserDenyList(@Value("${oc.app.jwtExpirationMs}") long retentionMs) {
+    this(retentionMs, System::currentTimeMillis);
+  }
+
+  UserDenyList(long retentionMs, LongSupplier clock) {
+    this.retentionMs = retentionMs;
+    this.clock = clock;
+  }
+
+  public void revoke(Long userId) {
+    long now = clock.getAsLong();
+    revokedUntil.values().removeIf(until -> until <= now);
+    revokedUntil.put(userId, now + retentionMs);
+  }
+
+  public boolean isRevoked(Long userId) {
+    Long until = revokedUntil.get(userId);
+    if (until == null) {
+      return false;
+    }
+
+    if (until <= clock.getAsLong()) {
+      revokedUntil.remove(userId, until);
+      return false;
+    }
+    return true;
+  }
+
+  public int size() {
+    return revokedUntil.size();
+  }
+}
@@ -0,0 +1,155 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded, time-limited cache of the principals resolved by the JWT filter, keyed by email.
+ * Entries are dropped once they are older than the configured TTL, or least recently used first
+ * when the cache is full. It must be invalidated whenever a user is deleted or their credentials change.
+ * Its size and hit, miss and eviction counts are exported over JMX.
+ */
+@Component
+@ManagedResource(objectName = "com.openclassrooms.starterjwt:type=UserDetailsCache")
+public class UserDetailsCache {
+  private final int maxSize;
+
+  private final long ttlMs;
+
+  private final LongSupplier clock;
+
+  private final LinkedHashMap<String, Entry> entries;
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  private final AtomicLong evictions = new AtomicLong();
+
+  @Autowired
+  public UserDetailsCache(@Value("${oc.app.userDetailsCache.maxSize:1000}") int maxSize,
+                          @Value("${oc.app.userDetailsCache.ttlMs:60000}") long ttlMs) {
+    this(maxSize, ttlMs, System::currentTimeMillis);
+  }
+
+  UserDetailsCache(int maxSize, long ttlMs, LongSupplier clock) {
+    this.maxSize = maxSize;
+    this.ttlMs = ttlMs;
+    this.clock = clock;
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        if (size() > UserDetailsCache.this.maxSize) {
+          evictions.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Returns the cached principal for this email, or null when it is absent or expired.
+   */
+  public UserDetailsImpl get(String email) {
+    synchronized (entries) {
+      Entry entry = entries.get(email);
+      if (entry != null && entry.expiresAt <= clock.getAsLong()) {
+        entries.remove(email);
+        evictions.incrementAndGet();
+        entry = null;
+      }
+
+      if (entry == null) {
+        misses.incrementAndGet();
+        return null;
+      }
+
+      hits.incrementAndGet();
+      return entry.userDetails;
+    }
+  }
+
+  public void put(String email, UserDetailsImpl userDetails) {
+    if (maxSize <= 0 || ttlMs <= 0) {
+      return;
+    }
+
+    synchronized (entries) {
+      entries.put(email, new Entry(userDetails, clock.getAsLong() + ttlMs));
+    }
+  }
+
+  public void evict(String email) {
+    synchronized (entries) {
+      entries.remove(email);
+    }
+  }
+
+  public void evictById(Long id) {
+    synchronized (entries) {
+      Iterator<Entry> iterator = entries.values().iterator();
+      while (iterator.hasNext()) {
+        if (id.equals(iterator.next().userDetails.getId())) {
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  @ManagedAttribute
+  public int getSize() {
+    return size();
+  }
+
+  @ManagedAttribute
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  @ManagedAttribute
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * Number of entries dropped because they expired or because the cache was full.
+   * Explicit invalidations are not counted.
+   */
+  @ManagedAttribute
+  public long getEvictionCount() {
+    return evictions.get();
+  }
+
+  private static final class Entry {
+    private final UserDetailsImpl userDetails;
+
+    private final long expiresAt;
+
+    private Entry(UserDetailsImpl userDetails, long expiresAt) {
+      this.userDetails = userDetails;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
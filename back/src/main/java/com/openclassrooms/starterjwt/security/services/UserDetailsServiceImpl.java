@@ -6,8 +6,8 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.projection.UserCredentials;
 
 @Service
 public class UserDetailsServiceImpl implements UserDetailsService {
@@ -17,10 +17,14 @@ public class UserDetailsServiceImpl implements UserDetailsService {
     this.userRepository = userRepository;
   }
 
+  /**
+   * Loads the principal, admin flag included, with a single query on the columns it needs.
+   * Deleted accounts are not found.
+   */
   @Override
-  @Transactional
+  @Transactional(readOnly = true)
   public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-    User user = userRepository.findByEmail(username)
+    UserCredentials user = userRepository.findCredentialsByEmail(username)
         .orElseThrow(() -> new UsernameNotFoundException("User Not Found with email: " + username));
 
     return UserDetailsImpl
@@ -29,6 +33,7 @@ public class UserDetailsServiceImpl implements UserDetailsService {
             .username(user.getEmail())
             .lastName(user.getLastName())
             .firstName(user.getFirstName())
+            .admin(user.isAdmin())
             .password(user.getPassword())
             .build();
   }
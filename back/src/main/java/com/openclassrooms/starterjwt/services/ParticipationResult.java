@@ -0,0 +1,11 @@
+package com.openclassrooms.starterjwt.services;
+
+/**
+ * Outcome of enrolling one user in a bulk participation request.
+ */
+public enum ParticipationResult {
+    ADDED,
+    ALREADY_PRESENT,
+    UNKNOWN_USER,
+    SESSION_FULL
+}
@@ -0,0 +1,9 @@
+package com.openclassrooms.starterjwt.services;
+
+/**
+ * Outcome of asking for a seat in a session that may be full.
+ */
+public enum ParticipationStatus {
+    PARTICIPATING,
+    WAITLISTED
+}
@@ -0,0 +1,72 @@
+package com.openclassrooms.starterjwt.services;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Hit ratios of the Hibernate second-level cache, overall and per region, exported over JMX.
+ * They need {@code hibernate.generate_statistics}; without it every count stays at zero.
+ */
+@Component
+@ManagedResource(objectName = "com.openclassrooms.starterjwt:type=SecondLevelCache")
+public class SecondLevelCacheStatistics {
+    private final Statistics statistics;
+
+    public SecondLevelCacheStatistics(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @ManagedAttribute
+    public long getHitCount() {
+        return this.statistics.getSecondLevelCacheHitCount();
+    }
+
+    @ManagedAttribute
+    public long getMissCount() {
+        return this.statistics.getSecondLevelCacheMissCount();
+    }
+
+    @ManagedAttribute
+    public double getHitRatio() {
+        return ratio(getHitCount(), getMissCount());
+    }
+
+    @ManagedAttribute
+    public double getQueryCacheHitRatio() {
+        return ratio(this.statistics.getQueryCacheHitCount(), this.statistics.getQueryCacheMissCount());
+    }
+
+    /**
+     * Hit ratio of every second-level cache region, by region name.
+     */
+    @ManagedAttribute
+    public Map<String, Double> getRegionHitRatios() {
+        Map<String, Double> ratios = new TreeMap<>();
+        for (String region : this.statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics regionStatistics = this.statistics.getCacheRegionStatistics(region);
+            if (regionStatistics != null) {
+                ratios.put(region, ratio(regionStatistics.getHitCount(), regionStatistics.getMissCount()));
+            }
+        }
+        return ratios;
+    }
+
+    @ManagedOperation
+    public void clear() {
+        this.statistics.clear();
+    }
+
+    private static double ratio(long hits, long misses) {
+        long requests = hits + misses;
+        return requests == 0 ? 0d : (double) hits / requests;
+    }
+}
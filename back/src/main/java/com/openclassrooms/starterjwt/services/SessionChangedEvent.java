@@ -0,0 +1,21 @@
+package com.openclassrooms.starterjwt.services;
+
+/**
+ * Published by {@link SessionService} whenever a session or its participants change. A null session id stands for
+ * changes to many sessions at once.
+ */
+public class SessionChangedEvent {
+    private final Long sessionId;
+
+    public SessionChangedEvent(Long sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public static SessionChangedEvent allSessions() {
+        return new SessionChangedEvent(null);
+    }
+
+    public Long getSessionId() {
+        return sessionId;
+    }
+}
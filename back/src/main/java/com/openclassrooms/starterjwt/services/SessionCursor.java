@@ -0,0 +1,50 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.repository.projection.SessionView;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Keyset position in the (date, id) ordering of sessions, exchanged with clients as an opaque token.
+ */
+@Getter
+@EqualsAndHashCode
+public class SessionCursor {
+    private final Date date;
+
+    private final Long id;
+
+    public SessionCursor(Date date, Long id) {
+        this.date = date;
+        this.id = id;
+    }
+
+    public static SessionCursor of(SessionView session) {
+        return new SessionCursor(session.getDate(), session.getId());
+    }
+
+    public String encode() {
+        String raw = this.date.getTime() + ":" + this.id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static SessionCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            if (separator < 0) {
+                throw new BadRequestException();
+            }
+
+            return new SessionCursor(new Date(Long.parseLong(raw.substring(0, separator))),
+                    Long.valueOf(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException();
+        }
+    }
+}
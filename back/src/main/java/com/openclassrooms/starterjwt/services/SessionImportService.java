@@ -0,0 +1,148 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.response.SessionImportResponse;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Creates many sessions in one request. Every row is checked before anything is written, teachers and users being
+ * looked up once for the whole import; if any row is invalid nothing is created and the errors of each row are
+ * reported. Valid imports are written as JDBC batches.
+ */
+@Service
+public class SessionImportService {
+    private final SessionRepository sessionRepository;
+
+    private final TeacherRepository teacherRepository;
+
+    private final UserRepository userRepository;
+
+    private final Validator validator;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final int maxRows;
+
+    public SessionImportService(SessionRepository sessionRepository,
+                                TeacherRepository teacherRepository,
+                                UserRepository userRepository,
+                                Validator validator,
+                                ApplicationEventPublisher eventPublisher,
+                                @Value("${oc.app.sessionImport.maxRows:10000}") int maxRows) {
+        this.sessionRepository = sessionRepository;
+        this.teacherRepository = teacherRepository;
+        this.userRepository = userRepository;
+        this.validator = validator;
+        this.eventPublisher = eventPublisher;
+        this.maxRows = maxRows;
+    }
+
+    @Transactional
+    public SessionImportResponse importSessions(List<SessionDto> rows) {
+        if (rows == null || rows.isEmpty() || rows.size() > this.maxRows) {
+            throw new BadRequestException();
+        }
+
+        Set<Long> teacherIds = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        for (SessionDto row : rows) {
+            if (row != null && row.getTeacher_id() != null) {
+                teacherIds.add(row.getTeacher_id());
+            }
+            if (row != null && row.getUsers() != null) {
+                row.getUsers().stream().filter(Objects::nonNull).forEach(userIds::add);
+            }
+        }
+        Map<Long, Teacher> teachers = new HashMap<>();
+        this.teacherRepository.findAllById(teacherIds).forEach(teacher -> teachers.put(teacher.getId(), teacher));
+        Map<Long, User> users = new HashMap<>();
+        if (!userIds.isEmpty()) {
+            this.userRepository.findAllActiveById(userIds).forEach(user -> users.put(user.getId(), user));
+        }
+
+        Map<Integer, List<String>> errors = new TreeMap<>();
+        List<Session> sessions = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            List<String> rowErrors = new ArrayList<>();
+            Session session = toSession(rows.get(i), teachers, users, rowErrors);
+            if (rowErrors.isEmpty()) {
+                sessions.add(session);
+            } else {
+                errors.put(i + 1, rowErrors);
+            }
+        }
+        if (!errors.isEmpty()) {
+            return SessionImportResponse.rejected(errors);
+        }
+
+        List<Long> ids = this.sessionRepository.insertSessions(sessions);
+        this.eventPublisher.publishEvent(SessionChangedEvent.allSessions());
+        return SessionImportResponse.imported(ids);
+    }
+
+    private Session toSession(SessionDto row, Map<Long, Teacher> teachers, Map<Long, User> users, List<String> errors) {
+        if (row == null) {
+            errors.add("row is empty");
+            return null;
+        }
+
+        for (ConstraintViolation<SessionDto> violation : this.validator.validate(row)) {
+            errors.add(violation.getPropertyPath() + " " + violation.getMessage());
+        }
+        Collections.sort(errors);
+
+        Teacher teacher = teachers.get(row.getTeacher_id());
+        if (row.getTeacher_id() != null && teacher == null) {
+            errors.add("teacher_id " + row.getTeacher_id() + " does not exist");
+        }
+
+        List<User> participants = new ArrayList<>();
+        if (row.getUsers() != null) {
+            for (Long userId : new LinkedHashSet<>(row.getUsers())) {
+                User user = userId == null ? null : users.get(userId);
+                if (userId == null) {
+                    errors.add("users must not contain null");
+                } else if (user == null) {
+                    errors.add("users " + userId + " does not exist");
+                } else {
+                    participants.add(user);
+                }
+            }
+        }
+        if (row.getCapacity() != null && participants.size() > row.getCapacity()) {
+            errors.add("users " + participants.size() + " participants exceed the capacity of " + row.getCapacity());
+        }
+
+        return Session.builder()
+                .name(row.getName())
+                .date(row.getDate())
+                .description(row.getDescription())
+                .teacher(teacher)
+                .capacity(row.getCapacity())
+                .users(participants)
+                .build();
+    }
+}
@@ -0,0 +1,180 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.mapper.SessionMapper;
+import com.openclassrooms.starterjwt.repository.projection.SessionView;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory copy of the mapped session list served by GET /api/session. It is built once, then patched one session at
+ * a time when a {@link SessionChangedEvent} is committed, or dropped when the event covers all sessions. It is also
+ * fully rebuilt once it is older than the configured max age so that writes made outside this instance are eventually
+ * picked up. Sessions are kept in date order, and every version gets its own ETag. A {@link SessionSearchIndex} is kept in step with the list.
+ */
+@Component
+public class SessionListSnapshot {
+    private static final Comparator<SessionDto> BY_DATE = Comparator
+            .comparing(SessionDto::getDate, Comparator.nullsFirst(Comparator.<Date>naturalOrder()))
+            .thenComparing(SessionDto::getId);
+
+    private final SessionService sessionService;
+
+    private final SessionMapper sessionMapper;
+
+    private final long maxAgeMs;
+
+    private final LongSupplier clock;
+
+    private final String instanceId = UUID.randomUUID().toString().substring(0, 8);
+
+    private final SessionSearchIndex searchIndex = new SessionSearchIndex();
+
+    private long version;
+
+    private long builtAt;
+
+    private TreeMap<Long, SessionDto> sessionsById;
+
+    private volatile Snapshot current;
+
+    @Autowired
+    public SessionListSnapshot(SessionService sessionService,
+                               SessionMapper sessionMapper,
+                               @Value("${oc.app.sessionSnapshot.maxAgeMs:60000}") long maxAgeMs) {
+        this(sessionService, sessionMapper, maxAgeMs, System::currentTimeMillis);
+    }
+
+    SessionListSnapshot(SessionService sessionService, SessionMapper sessionMapper, long maxAgeMs, LongSupplier clock) {
+        this.sessionService = sessionService;
+        this.sessionMapper = sessionMapper;
+        this.maxAgeMs = maxAgeMs;
+        this.clock = clock;
+    }
+
+    public Snapshot current() {
+        Snapshot snapshot = this.current;
+        if (snapshot != null && this.clock.getAsLong() - snapshot.builtAt < this.maxAgeMs) {
+            return snapshot;
+        }
+        return rebuild();
+    }
+
+    /**
+     * Runs after the commit of the change, still on the connection of that transaction: the view is read through it
+     * rather than a new transaction, so that a write never needs two connections of the pool.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onSessionChanged(SessionChangedEvent event) {
+        if (this.sessionsById == null) {
+            return;
+        }
+
+        if (event.getSessionId() == null) {
+            this.sessionsById = null;
+            this.current = null;
+            return;
+        }
+
+        TreeMap<Long, SessionDto> sessions = new TreeMap<>(this.sessionsById);
+        SessionView view = this.sessionService.findViewById(event.getSessionId());
+        if (view == null) {
+            sessions.remove(event.getSessionId());
+            this.searchIndex.remove(event.getSessionId());
+        } else {
+            SessionDto session = this.sessionMapper.viewToDto(view);
+            sessions.put(event.getSessionId(), session);
+            this.searchIndex.put(session);
+        }
+        publish(sessions);
+    }
+
+    private synchronized Snapshot rebuild() {
+        Snapshot snapshot = this.current;
+        long now = this.clock.getAsLong();
+        if (snapshot != null && now - snapshot.builtAt < this.maxAgeMs) {
+            return snapshot;
+        }
+
+        TreeMap<Long, SessionDto> sessions = new TreeMap<>();
+        for (SessionDto session : this.sessionMapper.viewsToDto(this.sessionService.findAllViews())) {
+            sessions.put(session.getId(), session);
+        }
+        this.searchIndex.replaceAll(sessions.values());
+        this.builtAt = now;
+        return publish(sessions);
+    }
+
+    /**
+     * Full-text search over the names and descriptions of the sessions in this snapshot, best matches first.
+     */
+    public List<SessionDto> search(String query, int limit) {
+        current();
+        return this.searchIndex.search(query, limit);
+    }
+
+    private Snapshot publish(TreeMap<Long, SessionDto> sessions) {
+        this.sessionsById = sessions;
+        this.version++;
+        List<SessionDto> byDate = new ArrayList<>(sessions.values());
+        byDate.sort(BY_DATE);
+        this.current = new Snapshot(Collections.unmodifiableList(byDate), this.instanceId + "-" + this.version, this.builtAt);
+        return this.current;
+    }
+
+    public static final class Snapshot {
+        private final List<SessionDto> sessions;
+
+        private final String version;
+
+        private final long builtAt;
+
+        public Snapshot(List<SessionDto> sessions, String version, long builtAt) {
+            this.sessions = sessions;
+            this.version = version;
+            this.builtAt = builtAt;
+        }
+
+        public List<SessionDto> getSessions() {
+            return sessions;
+        }
+
+        public String getEtag() {
+            return "\"" + version + "\"";
+        }
+
+        /**
+         * The sessions taking place at or after {@code date}, found by binary search. The slice has its own ETag,
+         * derived from where it starts, so it changes as sessions move into the past.
+         */
+        public Snapshot from(Date date) {
+            int low = 0;
+            int high = sessions.size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                Date sessionDate = sessions.get(middle).getDate();
+                if (sessionDate == null || sessionDate.before(date)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            if (low == 0) {
+                return this;
+            }
+            return new Snapshot(sessions.subList(low, sessions.size()), version + "-" + low, builtAt);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over the names and descriptions of the sessions. Terms are lower-cased and stripped of
+ * accents; each query term matches the indexed terms it is equal to or a prefix of, and a session must match every
+ * query term. Sessions are ranked by the sum of the TF-IDF weights of their matches, name terms counting more than
+ * description terms and prefix matches less than whole terms.
+ */
+public class SessionSearchIndex {
+    static final int MIN_TERM_LENGTH = 2;
+
+    private static final int NAME_WEIGHT = 3;
+
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    private static final double PREFIX_FACTOR = 0.5;
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final TreeMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+
+    private final Map<Long, Document> documents = new HashMap<>();
+
+    public void put(SessionDto session) {
+        lock.writeLock().lock();
+        try {
+            unindex(session.getId());
+            index(session);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long sessionId) {
+        lock.writeLock().lock();
+        try {
+            unindex(sessionId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void replaceAll(Collection<SessionDto> sessions) {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+            for (SessionDto session : sessions) {
+                index(session);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} sessions matching every term of {@code query}, best first.
+     */
+    public List<SessionDto> search(String query, int limit) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        if (terms.isEmpty() || limit < 1) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> scores = null;
+            for (String term : terms) {
+                Map<Long, Double> termScores = score(term, scores);
+                if (termScores.isEmpty()) {
+                    return Collections.emptyList();
+                }
+                scores = termScores;
+            }
+            return top(scores, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Scores one query term, only for the sessions in {@code candidates} when it is not null, on top of their score.
+     */
+    private Map<Long, Double> score(String term, Map<Long, Double> candidates) {
+        Map<Long, Double> scores = new HashMap<>();
+        double documentCount = documents.size();
+        for (Map.Entry<String, Map<Long, Integer>> posting : postings.subMap(term, true, term + Character.MAX_VALUE, true).entrySet()) {
+            double factor = posting.getKey().equals(term) ? 1d : PREFIX_FACTOR;
+            double idf = Math.log(1d + documentCount / posting.getValue().size());
+            for (Map.Entry<Long, Integer> match : posting.getValue().entrySet()) {
+                if (candidates == null || candidates.containsKey(match.getKey())) {
+                    scores.merge(match.getKey(), factor * match.getValue() * idf, Double::sum);
+                }
+            }
+        }
+
+        if (candidates != null) {
+            scores.replaceAll((sessionId, score) -> score + candidates.get(sessionId));
+        }
+        return scores;
+    }
+
+    private List<SessionDto> top(Map<Long, Double> scores, int limit) {
+        Comparator<Map.Entry<Long, Double>> byScore = Map.Entry.<Long, Double>comparingByValue()
+                .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder()));
+        PriorityQueue<Map.Entry<Long, Double>> best = new PriorityQueue<>(limit + 1, byScore);
+        for (Map.Entry<Long, Double> score : scores.entrySet()) {
+            best.offer(score);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+
+        List<SessionDto> results = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            results.add(documents.get(best.poll().getKey()).session);
+        }
+        Collections.reverse(results);
+        return results;
+    }
+
+    private void index(SessionDto session) {
+        Map<String, Integer> weights = new HashMap<>();
+        for (String term : tokenize(session.getName())) {
+            weights.merge(term, NAME_WEIGHT, Integer::sum);
+        }
+        for (String term : tokenize(session.getDescription())) {
+            weights.merge(term, DESCRIPTION_WEIGHT, Integer::sum);
+        }
+
+        for (Map.Entry<String, Integer> weight : weights.entrySet()) {
+            postings.computeIfAbsent(weight.getKey(), term -> new HashMap<>()).put(session.getId(), weight.getValue());
+        }
+        documents.put(session.getId(), new Document(session, weights.keySet()));
+    }
+
+    private void unindex(Long sessionId) {
+        Document document = documents.remove(sessionId);
+        if (document == null) {
+            return;
+        }
+
+        for (String term : document.terms) {
+            Map<Long, Integer> sessions = postings.get(term);
+            sessions.remove(sessionId);
+            if (sessions.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        String normalized = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+        List<String> terms = new ArrayList<>();
+        for (String term : SEPARATORS.split(normalized)) {
+            if (term.length() >= MIN_TERM_LENGTH) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    private static final class Document {
+        private final SessionDto session;
+
+        private final Collection<String> terms;
+
+        private Document(SessionDto session, Collection<String> terms) {
+            this.session = session;
+            this.terms = terms;
+        }
+    }
+}
@@ -1,78 +1,489 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.dto.SessionDto;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.exception.SessionFullException;
+import com.openclassrooms.starterjwt.exception.UnknownUsersException;
 import com.openclassrooms.starterjwt.models.Session;
-import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.projection.SessionView;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class SessionService {
+    public static final int DEFAULT_PAGE_SIZE = 20;
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    public static final int PURGE_CHUNK_SIZE = 500;
+
     private final SessionRepository sessionRepository;
 
     private final UserRepository userRepository;
 
-    public SessionService(SessionRepository sessionRepository, UserRepository userRepository) {
+    private final TeacherRepository teacherRepository;
+
+    private final WaitlistService waitlistService;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public SessionService(SessionRepository sessionRepository,
+                          UserRepository userRepository,
+                          TeacherRepository teacherRepository,
+                          WaitlistService waitlistService,
+                          ApplicationEventPublisher eventPublisher,
+                          TransactionTemplate transactionTemplate) {
         this.sessionRepository = sessionRepository;
         this.userRepository = userRepository;
+        this.teacherRepository = teacherRepository;
+        this.waitlistService = waitlistService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
     }
 
+    /**
+     * @throws BadRequestException when the session has more participants than its capacity
+     */
     public Session create(Session session) {
-        return this.sessionRepository.save(session);
+        checkCapacity(session);
+        Session created = this.sessionRepository.save(session);
+        this.sessionRepository.refreshParticipantCount(created.getId());
+        this.eventPublisher.publishEvent(new SessionChangedEvent(created.getId()));
+        return created;
     }
 
-    public void delete(Long id) {
-        this.sessionRepository.deleteById(id);
+    /**
+     * Deletes the session with one bulk statement per table and no read beforehand.
+     * Returns false when there was no such session.
+     */
+    @Transactional
+    public boolean delete(Long id) {
+        if (deleteAll(Collections.singletonList(id)) == 0) {
+            return false;
+        }
+
+        this.eventPublisher.publishEvent(new SessionChangedEvent(id));
+        return true;
     }
 
-    public List<Session> findAll() {
-        return this.sessionRepository.findAll();
+    /**
+     * Deletes the sessions that took place before {@code before}, {@code chunkSize} at a time and each chunk in its own
+     * transaction, so that no lock is held for long whatever the number of sessions. Returns how many were deleted.
+     */
+    public int deleteBefore(Date before, int chunkSize) {
+        int deleted = 0;
+        int chunk;
+        do {
+            chunk = this.transactionTemplate.execute(status -> {
+                List<Long> ids = this.sessionRepository.findIdsBefore(before, PageRequest.of(0, chunkSize));
+                return ids.isEmpty() ? 0 : deleteAll(ids);
+            });
+            deleted += chunk;
+        } while (chunk == chunkSize);
+
+        if (deleted > 0) {
+            this.eventPublisher.publishEvent(SessionChangedEvent.allSessions());
+        }
+        return deleted;
     }
 
-    public Session getById(Long id) {
-        return this.sessionRepository.findById(id).orElse(null);
+    private int deleteAll(List<Long> ids) {
+        this.waitlistService.deleteAll(ids);
+        this.sessionRepository.removeAllParticipants(ids);
+        return this.sessionRepository.deleteSessions(ids);
     }
 
+    /**
+     * Takes a user out of at most {@code limit} of their sessions, each freed seat going to the waitlist as in
+     * {@link #noLongerParticipate(Long, Long)}. The session rows are locked first, like a single cancellation does.
+     * Returns how many participations were removed, 0 once there are none left.
+     */
+    @Transactional
+    public int removeFromSessions(Long userId, int limit) {
+        List<Long> sessionIds = this.sessionRepository.findSessionIdsOfUser(userId, PageRequest.of(0, limit));
+        if (sessionIds.isEmpty()) {
+            return 0;
+        }
+
+        this.sessionRepository.lockSessions(sessionIds);
+        int removed = this.sessionRepository.removeUserFromSessions(userId, sessionIds);
+        this.sessionRepository.releaseSeats(sessionIds);
+        for (Long id : sessionIds) {
+            promoteWaiting(id);
+            this.eventPublisher.publishEvent(new SessionChangedEvent(id));
+        }
+        return removed;
+    }
+
+    public List<SessionView> findAllViews() {
+        return this.sessionRepository.findAllViews();
+    }
+
+    /**
+     * Returns up to {@code limit} sessions ordered by date then id, starting right after {@code after}
+     * (or from the beginning when it is null). Seeks on the (date, id) key instead of skipping rows,
+     * so deep pages cost the same as the first one.
+     */
+    public List<SessionView> findPage(SessionCursor after, int limit) {
+        if (after == null) {
+            return this.sessionRepository.findFirstViewPage(limit);
+        }
+
+        return this.sessionRepository.findViewPageAfter(after.getDate(), after.getId(), limit);
+    }
+
+    /**
+     * Same as {@link #findPage(SessionCursor, int)}, restricted to the sessions the user participates in.
+     * Only that user's participations are read, whatever the total number of sessions.
+     */
+    public List<SessionView> findPageForUser(Long userId, SessionCursor after, int limit) {
+        if (after == null) {
+            return this.sessionRepository.findFirstViewPageForUser(userId, limit);
+        }
+
+        return this.sessionRepository.findViewPageForUserAfter(userId, after.getDate(), after.getId(), limit);
+    }
+
+    /**
+     * Sessions taking place between {@code from} (inclusive) and {@code to} (exclusive, or unbounded when null),
+     * in date order.
+     */
+    public List<SessionView> findBetween(Date from, Date to) {
+        if (to == null) {
+            return this.sessionRepository.findViewsFrom(from);
+        }
+
+        return this.sessionRepository.findViewsBetween(from, to);
+    }
+
+    /**
+     * Hands every session to {@code action} as it is read, in id order, without holding the catalog in memory.
+     * The cursor stays open, and the transaction with it, until the last session has been handled.
+     */
+    @Transactional(readOnly = true)
+    public void forEachView(Consumer<SessionView> action) {
+        try (Stream<SessionView> sessions = this.sessionRepository.streamAllViews()) {
+            sessions.forEach(action);
+        }
+    }
+
+    public SessionView findViewById(Long id) {
+        return this.sessionRepository.findViewById(id).orElse(null);
+    }
+
+    /**
+     * Replaces the whole session. Without a version to check against, the current one is used, so the update always
+     * applies; with one, Hibernate rejects the update if the session has changed since. The session row is locked first,
+     * so that no booking is added while the participants are replaced. Seats left free go to the waitlist.
+     *
+     * @throws BadRequestException when the session has more participants than its capacity
+     */
+    @Transactional
     public Session update(Long id, Session session) {
+        checkCapacity(session);
+        this.sessionRepository.lockFreeSeats(id);
         session.setId(id);
-        return this.sessionRepository.save(session);
+        if (session.getVersion() == null) {
+            Long version = this.sessionRepository.findVersionById(id);
+            session.setVersion(version == null ? 0L : version);
+        }
+        Session updated = this.sessionRepository.save(session);
+        this.sessionRepository.refreshParticipantCount(id);
+        promoteWaiting(id);
+        this.eventPublisher.publishEvent(new SessionChangedEvent(id));
+        return updated;
+    }
+
+    /**
+     * Applies a JSON Merge Patch, already validated, made of the {@code fields} of {@code changes}. They are copied onto
+     * the managed session, so Hibernate writes only the columns that changed, guarded by the version of the session.
+     * The participants are left alone unless {@code users} is in the patch, in which case only the difference is
+     * deleted and inserted. The session row is locked first, as in {@link #participateAll(Long, List)}, so no booking can
+     * slip in between the capacity check and the commit. Seats freed by the patch, or added by a larger capacity, go to
+     * the waitlist.
+     *
+     * @throws ObjectOptimisticLockingFailureException when {@code changes} carries a version other than the current one
+     */
+    @Transactional
+    public Session patch(Long id, SessionDto changes, Set<String> fields) {
+        if (this.sessionRepository.lockFreeSeats(id) == null) {
+            throw new NotFoundException();
+        }
+
+        Session session = this.sessionRepository.getById(id);
+        if (changes.getVersion() != null && !changes.getVersion().equals(session.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(Session.class, id);
+        }
+
+        if (fields.contains("name")) {
+            session.setName(changes.getName());
+        }
+        if (fields.contains("date")) {
+            session.setDate(changes.getDate());
+        }
+        if (fields.contains("description")) {
+            session.setDescription(changes.getDescription());
+        }
+        if (fields.contains("teacher_id")) {
+            session.setTeacher(this.teacherRepository.findById(changes.getTeacher_id()).orElseThrow(BadRequestException::new));
+        }
+        if (fields.contains("capacity")) {
+            session.setCapacity(changes.getCapacity());
+        }
+
+        int participants = session.getParticipantCount() == null ? 0 : session.getParticipantCount();
+        if (fields.contains("users")) {
+            participants = replaceParticipants(session, changes.getUsers());
+        }
+        if (session.getCapacity() != null && participants > session.getCapacity()) {
+            throw new BadRequestException();
+        }
+        promoteWaiting(id);
+
+        this.eventPublisher.publishEvent(new SessionChangedEvent(id));
+        return session;
     }
 
+    /**
+     * Deletes and inserts only the participations that differ, leaving the mapped collection untouched so that
+     * Hibernate does not rewrite it. Returns the new number of participants.
+     */
+    private int replaceParticipants(Session session, List<Long> userIds) {
+        Set<Long> requested = new LinkedHashSet<>(userIds == null ? Collections.<Long>emptyList() : userIds);
+        requested.remove(null);
+        Set<Long> known = activeUserIds(requested);
+        if (known.size() < requested.size()) {
+            List<Long> unknown = new ArrayList<>(requested);
+            unknown.removeAll(known);
+            throw new UnknownUsersException(unknown);
+        }
+
+        Set<Long> current = new HashSet<>();
+        session.getUsers().forEach(user -> current.add(user.getId()));
+        List<Long> removed = new ArrayList<>(current);
+        removed.removeAll(requested);
+        List<Long> added = new ArrayList<>(requested);
+        added.removeAll(current);
+
+        if (!removed.isEmpty()) {
+            this.sessionRepository.removeParticipants(session.getId(), removed);
+        }
+        if (!added.isEmpty()) {
+            this.sessionRepository.addParticipants(session.getId(), added);
+        }
+        if (!removed.isEmpty() || !added.isEmpty()) {
+            this.sessionRepository.refreshParticipantCount(session.getId());
+        }
+        return requested.size();
+    }
+
+    /**
+     * Takes a seat with a compare-and-set on the participant counter of the session, then inserts the participation
+     * row, in one transaction. Concurrent bookings of the same session are serialized by the row lock of the session,
+     * taken before the counter update so that they all queue on the row before touching its indexes, so the capacity
+     * can never be exceeded and no participation is lost. Duplicates are detected by the unique constraint of the
+     * join table.
+     */
+    @Transactional
     public void participate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        User user = this.userRepository.findById(userId).orElse(null);
-        if (session == null || user == null) {
+        if (this.sessionRepository.lockFreeSeats(id) == null || !this.userRepository.existsByIdAndDeletedAtIsNull(userId)) {
+            throw new NotFoundException();
+        }
+
+        if (this.sessionRepository.reserveSeat(id) == 0) {
+            if (this.sessionRepository.countParticipant(id, userId) > 0) {
+                throw new BadRequestException();
+            }
+            throw new SessionFullException();
+        }
+
+        try {
+            this.sessionRepository.addParticipant(id, userId);
+        } catch (DataIntegrityViolationException e) {
+            throw new BadRequestException();
+        }
+        this.eventPublisher.publishEvent(new SessionChangedEvent(id));
+    }
+
+    /**
+     * Books a seat like {@link #participate(Long, Long)}, but puts the user at the end of the waitlist of the session
+     * instead of failing when it is full.
+     */
+    @Transactional
+    public ParticipationStatus participateOrWait(Long id, Long userId) {
+        if (this.sessionRepository.lockFreeSeats(id) == null || !this.userRepository.existsByIdAndDeletedAtIsNull(userId)) {
+            throw new NotFoundException();
+        }
+
+        if (this.sessionRepository.reserveSeat(id) == 0) {
+            if (this.sessionRepository.countParticipant(id, userId) > 0) {
+                throw new BadRequestException();
+            }
+
+            try {
+                this.waitlistService.enqueue(id, userId);
+            } catch (DataIntegrityViolationException e) {
+                throw new BadRequestException();
+            }
+            return ParticipationStatus.WAITLISTED;
+        }
+
+        try {
+            this.sessionRepository.addParticipant(id, userId);
+        } catch (DataIntegrityViolationException e) {
+            throw new BadRequestException();
+        }
+        this.eventPublisher.publishEvent(new SessionChangedEvent(id));
+        return ParticipationStatus.PARTICIPATING;
+    }
+
+    /**
+     * Enrolls many users at once: the users are checked with one query, the existing participations with another,
+     * and the new rows are written as a JDBC batch. Users beyond the seats left are reported as
+     * {@link ParticipationResult#SESSION_FULL}. Users already on the waitlist are served first. Results are given in the
+     * order of the request.
+     */
+    @Transactional
+    public Map<Long, ParticipationResult> participateAll(Long id, List<Long> userIds) {
+        Integer freeSeats = this.sessionRepository.lockFreeSeats(id);
+        if (freeSeats == null) {
             throw new NotFoundException();
         }
+        int promoted = promoteWaiting(id);
+        freeSeats -= promoted;
+
+        Set<Long> requested = new LinkedHashSet<>(userIds);
+        Set<Long> known = activeUserIds(requested);
+        Set<Long> present = known.isEmpty()
+                ? Collections.emptySet()
+                : new HashSet<>(this.sessionRepository.findParticipantIds(id, known));
+
+        Map<Long, ParticipationResult> results = new LinkedHashMap<>();
+        List<Long> added = new ArrayList<>();
+        for (Long userId : requested) {
+            if (!known.contains(userId)) {
+                results.put(userId, ParticipationResult.UNKNOWN_USER);
+            } else if (present.contains(userId)) {
+                results.put(userId, ParticipationResult.ALREADY_PRESENT);
+            } else if (added.size() >= freeSeats) {
+                results.put(userId, ParticipationResult.SESSION_FULL);
+            } else {
+                added.add(userId);
+                results.put(userId, ParticipationResult.ADDED);
+            }
+        }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(alreadyParticipate) {
+        if (!added.isEmpty()) {
+            this.sessionRepository.addParticipants(id, added);
+            this.sessionRepository.addSeats(id, added.size());
+        }
+        if (promoted > 0 || !added.isEmpty()) {
+            this.eventPublisher.publishEvent(new SessionChangedEvent(id));
+        }
+        return results;
+    }
+
+    @Transactional
+    public void leaveWaitlist(Long id, Long userId) {
+        if (!this.sessionRepository.existsById(id)) {
+            throw new NotFoundException();
+        }
+
+        if (!this.waitlistService.leave(id, userId)) {
             throw new BadRequestException();
         }
+    }
 
-        session.getUsers().add(user);
+    public List<Long> getWaitlist(Long id) {
+        if (!this.sessionRepository.existsById(id)) {
+            throw new NotFoundException();
+        }
 
-        this.sessionRepository.save(session);
+        return this.waitlistService.getWaitingUserIds(id);
     }
 
+    /**
+     * Frees the seat of the user and, in the same transaction, hands it to the first user of the waitlist.
+     * The next user is read from the head of the waitlist index, so cancelling does not scan the participations.
+     */
+    @Transactional
     public void noLongerParticipate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        if (session == null) {
+        if (this.sessionRepository.lockFreeSeats(id) == null) {
             throw new NotFoundException();
         }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(!alreadyParticipate) {
+        if (this.sessionRepository.removeParticipant(id, userId) == 0) {
             throw new BadRequestException();
         }
+        this.sessionRepository.releaseSeat(id);
+        promoteWaiting(id);
 
-        session.setUsers(session.getUsers().stream().filter(user -> !user.getId().equals(userId)).collect(Collectors.toList()));
+        this.eventPublisher.publishEvent(new SessionChangedEvent(id));
+    }
 
-        this.sessionRepository.save(session);
+    private static void checkCapacity(Session session) {
+        if (session.getCapacity() != null && session.getUsers() != null && session.getUsers().size() > session.getCapacity()) {
+            throw new BadRequestException();
+        }
+    }
+
+    /**
+     * The ids among {@code userIds} of users that exist and are not deleted.
+     */
+    private Set<Long> activeUserIds(Collection<Long> userIds) {
+        Set<Long> active = new HashSet<>();
+        if (!userIds.isEmpty()) {
+            this.userRepository.findAllActiveById(userIds).forEach(user -> active.add(user.getId()));
+        }
+        return active;
+    }
+
+    /**
+     * Hands the free seats of a session, whose row the caller has locked, to the head of its waitlist in order, skipping
+     * users deleted or booked in the meantime. Every change that frees seats or raises the capacity ends here, so that
+     * no seat stays empty while someone is waiting. Returns how many users were promoted.
+     */
+    private int promoteWaiting(Long id) {
+        if (!this.waitlistService.hasWaiting(id)) {
+            return 0;
+        }
+
+        Integer freeSeats = this.sessionRepository.lockFreeSeats(id);
+        int promoted = 0;
+        Long next;
+        while (freeSeats != null && promoted < freeSeats && (next = this.waitlistService.pollNext(id)) != null) {
+            if (this.userRepository.existsByIdAndDeletedAtIsNull(next) && this.sessionRepository.countParticipant(id, next) == 0) {
+                this.sessionRepository.addParticipant(id, next);
+                promoted++;
+            }
+        }
+        if (promoted > 0) {
+            this.sessionRepository.addSeats(id, promoted);
+        }
+        return promoted;
     }
 }
@@ -0,0 +1,115 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finishes the deletion of the accounts marked by {@link UserService#delete(Long)}: takes them out of the waitlists,
+ * then out of their sessions {@code batchSize} participations per transaction, and finally removes their row.
+ * An account is only purged {@code graceMs} after its deletion, once the requests that resolved it before have ended
+ * and the principal caches have expired. Progress is exported over JMX.
+ */
+@Component
+@ManagedResource(objectName = "com.openclassrooms.starterjwt:type=UserPurge")
+public class UserPurgeJob {
+    private static final Logger logger = LoggerFactory.getLogger(UserPurgeJob.class);
+
+    private final UserRepository userRepository;
+
+    private final SessionService sessionService;
+
+    private final WaitlistService waitlistService;
+
+    private final int batchSize;
+
+    private final long graceMs;
+
+    private final AtomicLong participationsRemoved = new AtomicLong();
+
+    private final AtomicLong usersPurged = new AtomicLong();
+
+    private final AtomicLong failures = new AtomicLong();
+
+    private volatile long lastRunAt;
+
+    public UserPurgeJob(UserRepository userRepository,
+                        SessionService sessionService,
+                        WaitlistService waitlistService,
+                        @Value("${oc.app.userPurge.batchSize:500}") int batchSize,
+                        @Value("${oc.app.userPurge.graceMs:60000}") long graceMs) {
+        this.userRepository = userRepository;
+        this.sessionService = sessionService;
+        this.waitlistService = waitlistService;
+        this.batchSize = batchSize;
+        this.graceMs = graceMs;
+    }
+
+    @Scheduled(fixedDelayString = "${oc.app.userPurge.delayMs:10000}")
+    public void run() {
+        LocalDateTime before = LocalDateTime.now().minus(this.graceMs, ChronoUnit.MILLIS);
+        for (Long userId : this.userRepository.findDeletedIds(before, PageRequest.of(0, this.batchSize))) {
+            try {
+                purge(userId);
+            } catch (RuntimeException e) {
+                this.failures.incrementAndGet();
+                logger.warn("Purge of user {} failed, it will be retried: {}", userId, e.getMessage());
+            }
+        }
+        this.lastRunAt = System.currentTimeMillis();
+    }
+
+    void purge(Long userId) {
+        this.waitlistService.removeUser(userId);
+
+        int removed;
+        while ((removed = this.sessionService.removeFromSessions(userId, this.batchSize)) > 0) {
+            this.participationsRemoved.addAndGet(removed);
+        }
+
+        if (this.userRepository.deleteMarked(userId) == 1) {
+            this.usersPurged.incrementAndGet();
+        }
+    }
+
+    /**
+     * Deleted accounts whose purge is not finished yet, including those still in their grace period.
+     */
+    @ManagedAttribute
+    public long getPendingCount() {
+        return this.userRepository.countByDeletedAtIsNotNull();
+    }
+
+    @ManagedAttribute
+    public long getParticipationsRemoved() {
+        return this.participationsRemoved.get();
+    }
+
+    @ManagedAttribute
+    public long getUsersPurged() {
+        return this.usersPurged.get();
+    }
+
+    @ManagedAttribute
+    public long getFailureCount() {
+        return this.failures.get();
+    }
+
+    /**
+     * Epoch millis of the end of the last run, 0 before the first one.
+     */
+    @ManagedAttribute
+    public long getLastRunAt() {
+        return this.lastRunAt;
+    }
+}
@@ -2,21 +2,51 @@ package com.openclassrooms.starterjwt.services;
 
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.UserDenyList;
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
 @Service
 public class UserService {
     private final UserRepository userRepository;
 
-    public UserService(UserRepository userRepository) {
+    private final UserDetailsCache userDetailsCache;
+
+    private final UserDenyList userDenyList;
+
+    public UserService(UserRepository userRepository, UserDetailsCache userDetailsCache, UserDenyList userDenyList) {
         this.userRepository = userRepository;
+        this.userDetailsCache = userDetailsCache;
+        this.userDenyList = userDenyList;
     }
 
+    /**
+     * Deactivates the account at once: it can no longer log in nor be resolved from a token.
+     * Its participations and its row are removed afterwards by {@link UserPurgeJob}.
+     */
     public void delete(Long id) {
-        this.userRepository.deleteById(id);
+        this.userRepository.markDeleted(id);
+        this.userDenyList.revoke(id);
+        this.userDetailsCache.evictById(id);
     }
 
+    /**
+     * Returns null for unknown and deleted users alike.
+     */
     public User findById(Long id) {
-        return this.userRepository.findById(id).orElse(null);
+        return this.userRepository.findById(id)
+                .filter(user -> user.getDeletedAt() == null)
+                .orElse(null);
+    }
+
+    /**
+     * Loads all the given users with a single IN query. Unknown and deleted ids are simply missing from the result.
+     */
+    public List<User> findAllById(Collection<Long> ids) {
+        return ids.isEmpty() ? Collections.emptyList() : this.userRepository.findAllActiveById(ids);
     }
 }
@@ -0,0 +1,73 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * FIFO waitlists of the sessions, kept in the WAITLIST table only so that every node of the application sees the
+ * same queues. The (session_id, id) index serves both the order and the lookup of the next user.
+ */
+@Service
+public class WaitlistService {
+    private final WaitlistRepository waitlistRepository;
+
+    public WaitlistService(WaitlistRepository waitlistRepository) {
+        this.waitlistRepository = waitlistRepository;
+    }
+
+    public WaitlistEntry enqueue(Long sessionId, Long userId) {
+        return this.waitlistRepository.saveAndFlush(new WaitlistEntry().setSessionId(sessionId).setUserId(userId));
+    }
+
+    /**
+     * Removes the user from the waitlist of the session; returns false when they were not waiting.
+     */
+    public boolean leave(Long sessionId, Long userId) {
+        WaitlistEntry entry = this.waitlistRepository.findBySessionIdAndUserId(sessionId, userId).orElse(null);
+        return entry != null && this.waitlistRepository.deleteEntry(entry.getId()) == 1;
+    }
+
+    /**
+     * Takes the first user of the waitlist out of it, or returns null when nobody is waiting.
+     * The entry is locked before it is deleted, so it must be called inside a transaction.
+     */
+    public Long pollNext(Long sessionId) {
+        WaitlistEntry head = this.waitlistRepository.lockFirst(sessionId).orElse(null);
+        if (head == null) {
+            return null;
+        }
+
+        this.waitlistRepository.deleteEntry(head.getId());
+        return head.getUserId();
+    }
+
+    public boolean hasWaiting(Long sessionId) {
+        return this.waitlistRepository.existsBySessionId(sessionId);
+    }
+
+    public List<Long> getWaitingUserIds(Long sessionId) {
+        return this.waitlistRepository.findBySessionIdOrderByIdAsc(sessionId).stream()
+                .map(WaitlistEntry::getUserId)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Deletes the waitlists of sessions that are being deleted, with one statement.
+     * The MySQL schema would cascade the rows, but the one Hibernate generates does not.
+     */
+    public void deleteAll(Collection<Long> sessionIds) {
+        this.waitlistRepository.deleteBySessionIds(sessionIds);
+    }
+
+    /**
+     * Takes a user out of every waitlist, for instance because their account is deleted.
+     */
+    public void removeUser(Long userId) {
+        this.waitlistRepository.deleteByUserId(userId);
+    }
+}
@@ -6,8 +6,8 @@ INSERT INTO TEACHERS (last_name, first_name, created_at, updated_at)
 VALUES ('Smith', 'Jane', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
 
 -- Sessions
-INSERT INTO SESSIONS (name, date, description, teacher_id, created_at, updated_at)
-VALUES ('Yoga Session', '2025-03-01', 'Beginner friendly yoga session', 1, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
+INSERT INTO SESSIONS (name, date, description, teacher_id, participant_count, created_at, updated_at)
+VALUES ('Yoga Session', '2025-03-01', 'Beginner friendly yoga session', 1, 1, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
 
 -- Participate (User registration to session)
 INSERT INTO PARTICIPATE (session_id, user_id)
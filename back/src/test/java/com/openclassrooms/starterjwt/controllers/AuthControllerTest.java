@@ -7,6 +7,7 @@ import com.openclassrooms.starterjwt.payload.request.LoginRequest;
 import com.openclassrooms.starterjwt.payload.request.SignupRequest;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.LoginExecutor;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,20 +16,30 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
-import java.util.Optional;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
-@SpringBootTest
+@SpringBootTest(properties = {"spring.jmx.enabled=true", "oc.app.login.threads=1", "oc.app.login.queueCapacity=1"})
 @AutoConfigureMockMvc(addFilters = false)
 class AuthControllerTest {
 
@@ -47,6 +58,9 @@ class AuthControllerTest {
     @MockBean
     private UserRepository userRepository;
 
+    @Autowired
+    private LoginExecutor loginExecutor;
+
     private final String BASE_URL = "/api/auth";
 
     @Test
@@ -62,42 +76,112 @@ class AuthControllerTest {
                 .username("test@test.com")
                 .firstName("John")
                 .lastName("Doe")
-                .admin(false)
+                .admin(true)
                 .password("password123")
                 .build();
 
-        User user = User.builder()
-                .id(1L)
-                .email("test@test.com")
-                .firstName("John")
-                .lastName("Doe")
-                .password("password123")
-                .admin(false)
-                .build();
-
         when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
                 .thenReturn(authentication);
         when(authentication.getPrincipal()).thenReturn(userDetails);
         when(jwtUtils.generateJwtToken(authentication)).thenReturn("test-jwt-token");
-        when(userRepository.findByEmail("test@test.com")).thenReturn(Optional.of(user));
 
         // When & Then
-        mockMvc.perform(post(BASE_URL + "/login")
+        MvcResult pending = mockMvc.perform(post(BASE_URL + "/login")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(asJsonString(loginRequest)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(pending))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.token").value("test-jwt-token"))
                 .andExpect(jsonPath("$.id").value(1))
                 .andExpect(jsonPath("$.firstName").value("John"))
                 .andExpect(jsonPath("$.lastName").value("Doe"))
-                .andExpect(jsonPath("$.admin").value(false));
+                .andExpect(jsonPath("$.admin").value(true));
 
         verify(authenticationManager).authenticate(any(UsernamePasswordAuthenticationToken.class));
         verify(jwtUtils).generateJwtToken(authentication);
-        verify(userRepository).findByEmail("test@test.com");
+        verifyNoInteractions(userRepository);
     }
 
 
+    @Test
+    void testLoginWithBadCredentials() throws Exception {
+        // Given
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail("test@test.com");
+        loginRequest.setPassword("wrong");
+
+        when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
+                .thenThrow(new BadCredentialsException("Bad credentials"));
+
+        // When & Then
+        MvcResult pending = mockMvc.perform(post(BASE_URL + "/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(loginRequest)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(pending))
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.message").value("Error: Bad credentials"));
+
+        verify(jwtUtils, never()).generateJwtToken(any(Authentication.class));
+    }
+
+    @Test
+    void testLoginWhenExecutorIsSaturated() throws Exception {
+        // Given
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail("test@test.com");
+        loginRequest.setPassword("password123");
+
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class))).thenAnswer(invocation -> {
+            running.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            throw new BadCredentialsException("Bad credentials");
+        });
+        ObjectName loginExecutorName = new ObjectName("com.openclassrooms.starterjwt:type=LoginExecutor");
+        long rejectedBefore = loginExecutor.getRejectedCount();
+
+        try {
+            // The only login thread blocks and the second login fills the queue
+            MvcResult blocked = mockMvc.perform(post(BASE_URL + "/login")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(asJsonString(loginRequest)))
+                    .andReturn();
+            assertThat(running.await(10, TimeUnit.SECONDS)).isTrue();
+            MvcResult queued = mockMvc.perform(post(BASE_URL + "/login")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(asJsonString(loginRequest)))
+                    .andReturn();
+
+            // When & Then
+            MvcResult rejected = mockMvc.perform(post(BASE_URL + "/login")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(asJsonString(loginRequest)))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            mockMvc.perform(asyncDispatch(rejected))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(jsonPath("$.message").value("Error: Too many login attempts, please retry later"));
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertThat(server.getAttribute(loginExecutorName, "QueueDepth")).isEqualTo(1);
+            assertThat(server.getAttribute(loginExecutorName, "RejectedCount")).isEqualTo(rejectedBefore + 1);
+
+            release.countDown();
+            mockMvc.perform(asyncDispatch(blocked)).andExpect(status().isUnauthorized());
+            mockMvc.perform(asyncDispatch(queued)).andExpect(status().isUnauthorized());
+        } finally {
+            release.countDown();
+        }
+    }
+
     @Test
     void testSuccessfulRegistration() throws Exception {
         // Given
@@ -167,6 +251,18 @@ class AuthControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void testAuthenticationMetricsAreExportedOverJmx() throws Exception {
+        // Given
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName userDetailsCache = new ObjectName("com.openclassrooms.starterjwt:type=UserDetailsCache");
+
+        // When & Then
+        for (String attribute : new String[]{"Size", "HitCount", "MissCount", "EvictionCount"}) {
+            assertThat(server.getAttribute(userDetailsCache, attribute)).isNotNull();
+        }
+    }
+
     private String asJsonString(final Object obj) {
         try {
             return new ObjectMapper().writeValueAsString(obj);
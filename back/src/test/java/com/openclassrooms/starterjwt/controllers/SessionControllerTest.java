@@ -3,25 +3,44 @@ package com.openclassrooms.starterjwt.controllers;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.exception.UnknownUsersException;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.payload.response.SessionImportResponse;
+import com.openclassrooms.starterjwt.repository.projection.SessionView;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.ParticipationResult;
+import com.openclassrooms.starterjwt.services.ParticipationStatus;
+import com.openclassrooms.starterjwt.services.SessionCursor;
+import com.openclassrooms.starterjwt.services.SessionImportService;
+import com.openclassrooms.starterjwt.services.SessionListSnapshot;
 import com.openclassrooms.starterjwt.services.SessionService;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.startsWith;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -40,16 +59,22 @@ class SessionControllerTest {
     @MockBean
     private SessionMapper sessionMapper;
 
+    @MockBean
+    private SessionListSnapshot sessionListSnapshot;
+
+    @MockBean
+    private SessionImportService sessionImportService;
+
     private final String BASE_URL = "/api/session";
 
     @Test
     void testShouldGetSessionById() throws Exception {
         // Given
-        Session mockSession = createMockSession();
+        SessionView mockView = createMockView(1L);
         SessionDto mockSessionDto = createMockSessionDto();
 
-        when(sessionService.getById(1L)).thenReturn(mockSession);
-        when(sessionMapper.toDto(mockSession)).thenReturn(mockSessionDto);
+        when(sessionService.findViewById(1L)).thenReturn(mockView);
+        when(sessionMapper.viewToDto(mockView)).thenReturn(mockSessionDto);
 
         // When & Then
         mockMvc.perform(get(BASE_URL + "/{id}", 1L)
@@ -60,14 +85,37 @@ class SessionControllerTest {
                 .andExpect(jsonPath("$.name").value("Yoga Session"))
                 .andExpect(jsonPath("$.description").value("Beginner yoga class"));
 
-        verify(sessionService).getById(1L);
-        verify(sessionMapper).toDto(mockSession);
+        verify(sessionService).findViewById(1L);
+        verify(sessionMapper).viewToDto(mockView);
+    }
+
+    @Test
+    void testShouldReturnNotModifiedUntilParticipantsChange() throws Exception {
+        // Given
+        SessionView mockView = createMockView(1L);
+        SessionDto mockSessionDto = createMockSessionDto();
+        when(sessionService.findViewById(1L)).thenReturn(mockView);
+        when(sessionMapper.viewToDto(mockView)).thenReturn(mockSessionDto);
+        String etag = mockMvc.perform(get(BASE_URL + "/{id}", 1L))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("Last-Modified"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // When & Then
+        mockMvc.perform(get(BASE_URL + "/{id}", 1L).header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        mockSessionDto.getUsers().add(2L);
+        mockMvc.perform(get(BASE_URL + "/{id}", 1L).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users", hasSize(1)));
     }
 
     @Test
     void testShouldReturnNotFoundWhenSessionDoesNotExist() throws Exception {
         // Given
-        when(sessionService.getById(999L)).thenReturn(null);
+        when(sessionService.findViewById(999L)).thenReturn(null);
 
         // When & Then
         mockMvc.perform(get(BASE_URL + "/{id}", 999L)
@@ -78,18 +126,234 @@ class SessionControllerTest {
     @Test
     void testShouldGetAllSessions() throws Exception {
         // Given
-        List<Session> mockSessions = Arrays.asList(createMockSession(), createMockSession());
-        List<SessionDto> mockSessionDtos = Arrays.asList(createMockSessionDto(), createMockSessionDto());
-
-        when(sessionService.findAll()).thenReturn(mockSessions);
-        when(sessionMapper.toDto(mockSessions)).thenReturn(mockSessionDtos);
+        List<SessionDto> mockSessionDtos = Arrays.asList(createUpcomingSessionDto(1L), createUpcomingSessionDto(2L));
+        when(sessionListSnapshot.current()).thenReturn(new SessionListSnapshot.Snapshot(mockSessionDtos, "v1", 0L));
 
         // When & Then
         mockMvc.perform(get(BASE_URL)
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v1\""))
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$", hasSize(2)));
+
+        verify(sessionService, never()).findAllViews();
+    }
+
+    @Test
+    void testShouldExcludePastSessionsByDefault() throws Exception {
+        // Given
+        SessionDto pastSession = createMockSessionDto();
+        pastSession.setDate(new Date(System.currentTimeMillis() - 86_400_000L));
+        List<SessionDto> mockSessionDtos = Arrays.asList(pastSession, createUpcomingSessionDto(2L));
+        when(sessionListSnapshot.current()).thenReturn(new SessionListSnapshot.Snapshot(mockSessionDtos, "v1", 0L));
+
+        // When & Then
+        mockMvc.perform(get(BASE_URL)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v1-1\""))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value(2));
+    }
+
+    @Test
+    void testShouldGetSessionsInDateRange() throws Exception {
+        // Given
+        List<SessionView> mockViews = Arrays.asList(createMockView(1L), createMockView(2L));
+        when(sessionService.findBetween(any(Date.class), any(Date.class))).thenReturn(mockViews);
+        when(sessionMapper.viewsToDto(mockViews)).thenReturn(Arrays.asList(createMockSessionDto(), createMockSessionDto()));
+
+        // When & Then
+        mockMvc.perform(get(BASE_URL)
+                        .param("from", "2024-01-01")
+                        .param("to", "2024-02-01T12:00:00")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+
+        verify(sessionListSnapshot, never()).current();
+    }
+
+    @Test
+    void testShouldRejectInvalidDateRange() throws Exception {
+        // When & Then
+        mockMvc.perform(get(BASE_URL).param("from", "2024-02-01").param("to", "2024-01-01"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get(BASE_URL).param("from", "yesterday"))
+                .andExpect(status().isBadRequest());
+
+        verify(sessionService, never()).findBetween(any(), any());
+    }
+
+    @Test
+    void testShouldExportSessionsAsNdjson() throws Exception {
+        // Given
+        SessionView first = createMockView(1L);
+        SessionView second = createMockView(2L);
+        when(sessionMapper.viewToDto(first)).thenReturn(createUpcomingSessionDto(1L));
+        when(sessionMapper.viewToDto(second)).thenReturn(createUpcomingSessionDto(2L));
+        doAnswer(invocation -> {
+            Consumer<SessionView> action = invocation.getArgument(0);
+            action.accept(first);
+            action.accept(second);
+            return null;
+        }).when(sessionService).forEachView(any());
+
+        // When
+        String body = mockMvc.perform(get(BASE_URL + "/export"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        // Then
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).startsWith("{\"id\":1,");
+        assertThat(lines[1]).startsWith("{\"id\":2,");
+        verify(sessionService, never()).findAllViews();
+    }
+
+    @Test
+    void testShouldImportSessionsFromJson() throws Exception {
+        // Given
+        when(sessionImportService.importSessions(anyList())).thenReturn(SessionImportResponse.imported(Arrays.asList(7L, 8L)));
+
+        // When & Then
+        mockMvc.perform(post(BASE_URL + "/import")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"name\":\"Yoga\",\"date\":\"2030-01-01T10:00:00.000+00:00\",\"teacher_id\":1,\"description\":\"Morning\"},"
+                                + "{\"name\":\"Pilates\",\"date\":\"2030-01-02T10:00:00.000+00:00\",\"teacher_id\":1,\"description\":\"Evening\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.ids", hasSize(2)))
+                .andExpect(jsonPath("$.ids[0]").value(7));
+    }
+
+    @Test
+    void testShouldImportSessionsFromCsvAndReportRowErrors() throws Exception {
+        // Given
+        Map<Integer, List<String>> errors = new LinkedHashMap<>();
+        errors.put(2, Arrays.asList("teacher_id 9 does not exist"));
+        when(sessionImportService.importSessions(anyList())).thenReturn(SessionImportResponse.rejected(errors));
+        String csv = "name,date,teacher_id,description,capacity,users\n"
+                + "Yoga,2030-01-01T10:00,1,\"Breath, posture\",10,1;2\n"
+                + "Pilates,2030-01-02,9,Core,,\n";
+
+        // When & Then
+        mockMvc.perform(post(BASE_URL + "/import").contentType("text/csv").content(csv))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errors['2'][0]").value("teacher_id 9 does not exist"));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<SessionDto>> rows = ArgumentCaptor.forClass(List.class);
+        verify(sessionImportService).importSessions(rows.capture());
+        assertThat(rows.getValue()).hasSize(2);
+        assertThat(rows.getValue().get(0).getDescription()).isEqualTo("Breath, posture");
+        assertThat(rows.getValue().get(0).getUsers()).containsExactly(1L, 2L);
+        assertThat(rows.getValue().get(1).getCapacity()).isNull();
+        assertThat(rows.getValue().get(1).getTeacher_id()).isEqualTo(9L);
+    }
+
+    @Test
+    void testShouldRejectMalformedCsv() throws Exception {
+        // When & Then
+        mockMvc.perform(post(BASE_URL + "/import").contentType("text/csv")
+                        .content("name,date,teacher_id,description\nYoga,tomorrow,1,Morning\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value(startsWith("row 1: ")));
+
+        verify(sessionImportService, never()).importSessions(anyList());
+    }
+
+    @Test
+    void testShouldSearchSessions() throws Exception {
+        // Given
+        when(sessionListSnapshot.search("yoga", 5)).thenReturn(Arrays.asList(createUpcomingSessionDto(1L)));
+
+        // When & Then
+        mockMvc.perform(get(BASE_URL + "/search").param("q", "yoga").param("size", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value(1));
+    }
+
+    @Test
+    void testShouldReturnNotModifiedWhenSessionListIsUnchanged() throws Exception {
+        // Given
+        List<SessionDto> mockSessionDtos = Arrays.asList(createUpcomingSessionDto(1L), createUpcomingSessionDto(2L));
+        when(sessionListSnapshot.current()).thenReturn(new SessionListSnapshot.Snapshot(mockSessionDtos, "v1", 0L));
+
+        // When & Then
+        mockMvc.perform(get(BASE_URL)
+                        .header("If-None-Match", "\"v1\"")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void testShouldGetFirstPageWithNextCursor() throws Exception {
+        // Given
+        SessionView first = createMockView(1L);
+        SessionView second = createMockView(2L);
+        SessionView lookahead = createMockView(3L);
+        List<SessionView> page = Arrays.asList(first, second);
+
+        when(sessionService.findPage(null, 3)).thenReturn(Arrays.asList(first, second, lookahead));
+        when(sessionMapper.viewsToDto(page)).thenReturn(Arrays.asList(createMockSessionDto(), createMockSessionDto()));
+
+        // When & Then
+        mockMvc.perform(get(BASE_URL + "/page")
+                        .param("size", "2")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sessions", hasSize(2)))
+                .andExpect(jsonPath("$.nextCursor").value(SessionCursor.of(second).encode()));
+    }
+
+    @Test
+    void testShouldGetLastPageWithoutNextCursor() throws Exception {
+        // Given
+        SessionView last = createMockView(1L);
+        SessionCursor cursor = new SessionCursor(new Date(0L), 1L);
+
+        when(sessionService.findPage(cursor, SessionService.DEFAULT_PAGE_SIZE + 1)).thenReturn(Arrays.asList(last));
+        when(sessionMapper.viewsToDto(Arrays.asList(last))).thenReturn(Arrays.asList(createMockSessionDto()));
+
+        // When & Then
+        mockMvc.perform(get(BASE_URL + "/page")
+                        .param("cursor", cursor.encode())
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sessions", hasSize(1)))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void testShouldClampPageSizeToMaximum() throws Exception {
+        // Given
+        when(sessionService.findPage(null, SessionService.MAX_PAGE_SIZE + 1)).thenReturn(new ArrayList<>());
+        when(sessionMapper.viewsToDto(new ArrayList<>())).thenReturn(new ArrayList<>());
+
+        // When & Then
+        mockMvc.perform(get(BASE_URL + "/page")
+                        .param("size", "5000")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        verify(sessionService).findPage(null, SessionService.MAX_PAGE_SIZE + 1);
+    }
+
+    @Test
+    void testShouldRejectInvalidPageRequests() throws Exception {
+        mockMvc.perform(get(BASE_URL + "/page").param("size", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get(BASE_URL + "/page").param("size", "abc"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get(BASE_URL + "/page").param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(sessionService);
     }
 
     @Test
@@ -110,6 +374,22 @@ class SessionControllerTest {
                 .andExpect(jsonPath("$.name").value("Yoga Session"));
     }
 
+    @Test
+    void testShouldRejectSessionWithUnknownParticipants() throws Exception {
+        // Given
+        SessionDto inputDto = createMockSessionDto();
+        when(sessionMapper.toEntity(any(SessionDto.class))).thenThrow(new UnknownUsersException(Arrays.asList(998L, 999L)));
+
+        // When & Then
+        mockMvc.perform(post(BASE_URL)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(inputDto)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Unknown user ids: [998, 999]"));
+
+        verify(sessionService, never()).create(any());
+    }
+
     @Test
     void testShouldUpdateSession() throws Exception {
         // Given
@@ -128,10 +408,76 @@ class SessionControllerTest {
     }
 
     @Test
-    void testShouldDeleteSession() throws Exception {
+    void testShouldAnswerConflictWhenUpdatingAStaleVersion() throws Exception {
         // Given
+        SessionDto inputDto = createMockSessionDto();
         Session mockSession = createMockSession();
-        when(sessionService.getById(1L)).thenReturn(mockSession);
+        when(sessionMapper.toEntity(any(SessionDto.class))).thenReturn(mockSession);
+        when(sessionService.update(eq(1L), any(Session.class))).thenThrow(new ObjectOptimisticLockingFailureException(Session.class, 1L));
+
+        // When & Then
+        mockMvc.perform(put(BASE_URL + "/{id}", 1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(inputDto)))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void testShouldPatchOnlyTheFieldsOfTheMergePatch() throws Exception {
+        // Given
+        SessionView view = createMockView(1L);
+        when(sessionService.findViewById(1L)).thenReturn(view);
+        when(sessionMapper.viewToDto(view)).thenReturn(createMockSessionDto());
+
+        // When & Then
+        mockMvc.perform(patch(BASE_URL + "/{id}", 1L)
+                        .contentType("application/merge-patch+json")
+                        .content("{\"description\":\"Advanced class\",\"capacity\":null,\"version\":4}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Set<String>> fields = ArgumentCaptor.forClass(Set.class);
+        ArgumentCaptor<SessionDto> changes = ArgumentCaptor.forClass(SessionDto.class);
+        verify(sessionService).patch(eq(1L), changes.capture(), fields.capture());
+        assertThat(fields.getValue()).containsExactlyInAnyOrder("description", "capacity", "version");
+        assertThat(changes.getValue().getDescription()).isEqualTo("Advanced class");
+        assertThat(changes.getValue().getVersion()).isEqualTo(4L);
+        verify(sessionMapper, never()).toEntity(any(SessionDto.class));
+    }
+
+    @Test
+    void testShouldRejectInvalidOrUnknownPatchFields() throws Exception {
+        // When & Then
+        mockMvc.perform(patch(BASE_URL + "/{id}", 1L)
+                        .contentType("application/merge-patch+json")
+                        .content("{\"name\":\"\"}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(patch(BASE_URL + "/{id}", 1L)
+                        .contentType("application/merge-patch+json")
+                        .content("{\"participantCount\":0}"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(sessionService);
+    }
+
+    @Test
+    void testShouldAnswerConflictWhenPatchingAStaleVersion() throws Exception {
+        // Given
+        when(sessionService.patch(eq(1L), any(SessionDto.class), anySet()))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Session.class, 1L));
+
+        // When & Then
+        mockMvc.perform(patch(BASE_URL + "/{id}", 1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Pilates\",\"version\":1}"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void testShouldDeleteSession() throws Exception {
+        // Given
+        when(sessionService.delete(1L)).thenReturn(true);
 
         // When & Then
         mockMvc.perform(delete(BASE_URL + "/{id}", 1L))
@@ -140,6 +486,41 @@ class SessionControllerTest {
         verify(sessionService).delete(1L);
     }
 
+    @Test
+    void testShouldReturnNotFoundWhenDeletingUnknownSession() throws Exception {
+        // Given
+        when(sessionService.delete(1L)).thenReturn(false);
+
+        // When & Then
+        mockMvc.perform(delete(BASE_URL + "/{id}", 1L))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testShouldDeletePastSessionsForAdminsOnly() throws Exception {
+        // Given
+        UserDetailsImpl admin = UserDetailsImpl.builder().id(1L).username("admin@studio.com").admin(true).build();
+        UserDetailsImpl member = UserDetailsImpl.builder().id(2L).username("member@studio.com").admin(false).build();
+        when(sessionService.deleteBefore(any(Date.class), eq(SessionService.PURGE_CHUNK_SIZE))).thenReturn(1_200);
+
+        // When & Then
+        try {
+            authenticate(member);
+            mockMvc.perform(delete(BASE_URL).param("before", "2024-01-01"))
+                    .andExpect(status().isForbidden());
+            authenticate(admin);
+            mockMvc.perform(delete(BASE_URL).param("before", "yesterday"))
+                    .andExpect(status().isBadRequest());
+            mockMvc.perform(delete(BASE_URL).param("before", "2024-01-01"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.deleted").value(1_200));
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+
+        verify(sessionService, times(1)).deleteBefore(any(Date.class), anyInt());
+    }
+
     @Test
     void testShouldParticipateInSession() throws Exception {
         // When & Then
@@ -158,6 +539,72 @@ class SessionControllerTest {
         verify(sessionService).noLongerParticipate(1L, 1L);
     }
 
+    @Test
+    void testShouldParticipateAllInSession() throws Exception {
+        // Given
+        Map<Long, ParticipationResult> results = new LinkedHashMap<>();
+        results.put(2L, ParticipationResult.ADDED);
+        results.put(3L, ParticipationResult.UNKNOWN_USER);
+        when(sessionService.participateAll(1L, Arrays.asList(2L, 3L))).thenReturn(results);
+
+        // When & Then
+        mockMvc.perform(post(BASE_URL + "/{id}/participate", 1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userIds\": [2, 3]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.2").value("ADDED"))
+                .andExpect(jsonPath("$.3").value("UNKNOWN_USER"));
+    }
+
+    @Test
+    void testShouldRejectEmptyBulkParticipation() throws Exception {
+        // When & Then
+        mockMvc.perform(post(BASE_URL + "/{id}/participate", 1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userIds\": []}"))
+                .andExpect(status().isBadRequest());
+
+        verify(sessionService, never()).participateAll(any(), any());
+    }
+
+    @Test
+    void testShouldJoinWaitlistOfFullSession() throws Exception {
+        // Given
+        when(sessionService.participateOrWait(1L, 2L)).thenReturn(ParticipationStatus.WAITLISTED);
+
+        // When & Then
+        mockMvc.perform(post(BASE_URL + "/{id}/waitlist/{userId}", 1L, 2L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").value("WAITLISTED"));
+    }
+
+    @Test
+    void testShouldLeaveWaitlist() throws Exception {
+        // When & Then
+        mockMvc.perform(delete(BASE_URL + "/{id}/waitlist/{userId}", 1L, 2L))
+                .andExpect(status().isOk());
+
+        verify(sessionService).leaveWaitlist(1L, 2L);
+    }
+
+    @Test
+    void testShouldGetWaitlist() throws Exception {
+        // Given
+        when(sessionService.getWaitlist(1L)).thenReturn(Arrays.asList(3L, 2L));
+
+        // When & Then
+        mockMvc.perform(get(BASE_URL + "/{id}/waitlist", 1L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0]").value(3));
+    }
+
+    // Security filters are off here, so the principal is set on the context directly
+    private void authenticate(UserDetailsImpl principal) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
     private Session createMockSession() {
         return Session.builder()
                 .id(1L)
@@ -169,6 +616,20 @@ class SessionControllerTest {
                 .build();
     }
 
+    private SessionView createMockView(Long id) {
+        SessionView view = mock(SessionView.class);
+        when(view.getId()).thenReturn(id);
+        when(view.getDate()).thenReturn(new Date(1700000000000L + id));
+        return view;
+    }
+
+    private SessionDto createUpcomingSessionDto(Long id) {
+        SessionDto sessionDto = createMockSessionDto();
+        sessionDto.setId(id);
+        sessionDto.setDate(new Date(System.currentTimeMillis() + 86_400_000L * id));
+        return sessionDto;
+    }
+
     private SessionDto createMockSessionDto() {
         return new SessionDto(
                 1L,
@@ -178,7 +639,9 @@ class SessionControllerTest {
                 "Beginner yoga class",
                 new ArrayList<>(),
                 LocalDateTime.now(),
-                LocalDateTime.now()
+                LocalDateTime.now(),
+                20,
+                0L
         );
     }
 
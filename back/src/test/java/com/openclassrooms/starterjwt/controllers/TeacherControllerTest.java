@@ -11,8 +11,10 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 
@@ -67,6 +69,30 @@ class TeacherControllerTest {
         verifyNoMoreInteractions(teacherService, teacherMapper);
     }
 
+    @Test
+    void testShouldReturnNotModifiedWhenTeacherIsUnchanged() throws Exception {
+        // Given
+        Teacher mockTeacher = Teacher.builder()
+                .id(1L)
+                .lastName("Doe")
+                .firstName("John")
+                .updatedAt(LocalDateTime.of(2024, 1, 15, 10, 0))
+                .build();
+        when(teacherService.findById(1L)).thenReturn(mockTeacher);
+        when(teacherMapper.toDto(mockTeacher)).thenReturn(new TeacherDto());
+
+        MockHttpServletResponse response = mockMvc.perform(get(BASE_URL + "/{id}", 1L))
+                .andExpect(status().isOk())
+                .andReturn().getResponse();
+
+        // When & Then
+        mockMvc.perform(get(BASE_URL + "/{id}", 1L).header("If-None-Match", response.getHeader("ETag")))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(get(BASE_URL + "/{id}", 1L).header("If-Modified-Since", response.getHeader("Last-Modified")))
+                .andExpect(status().isNotModified());
+    }
+
     @Test
     void testShouldReturnNotFoundWhenTeacherDoesNotExist() throws Exception {
         // Given
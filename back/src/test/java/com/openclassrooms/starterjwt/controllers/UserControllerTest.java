@@ -1,10 +1,15 @@
 package com.openclassrooms.starterjwt.controllers;
 
 
+import com.openclassrooms.starterjwt.dto.SessionDto;
 import com.openclassrooms.starterjwt.dto.UserDto;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.mapper.UserMapper;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.projection.SessionView;
+import com.openclassrooms.starterjwt.services.SessionCursor;
+import com.openclassrooms.starterjwt.services.SessionService;
 import com.openclassrooms.starterjwt.services.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,6 +21,12 @@ import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.startsWith;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -34,6 +45,12 @@ class UserControllerTest {
     @MockBean
     private UserMapper userMapper;
 
+    @MockBean
+    private SessionService sessionService;
+
+    @MockBean
+    private SessionMapper sessionMapper;
+
     private User testUser;
 
     private UserDto testUserDto;
@@ -80,6 +97,57 @@ class UserControllerTest {
         verify(userMapper).toDto(testUser);
     }
 
+    @Test
+    void testShouldReturnNotModifiedUntilUserChanges() throws Exception {
+        // Given
+        testUser.setUpdatedAt(LocalDateTime.of(2024, 1, 15, 10, 0));
+        when(userService.findById(1L)).thenReturn(testUser);
+        when(userMapper.toDto(testUser)).thenReturn(testUserDto);
+        String etag = mockMvc.perform(get(BASE_URL + "/{id}", 1L))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", startsWith("W/")))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // When & Then
+        mockMvc.perform(get(BASE_URL + "/{id}", 1L).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        testUser.setUpdatedAt(LocalDateTime.of(2024, 1, 15, 10, 5));
+        mockMvc.perform(get(BASE_URL + "/{id}", 1L).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1));
+    }
+
+    @Test
+    void testShouldGetSessionsOfUserPageByPage() throws Exception {
+        // Given
+        SessionView first = mock(SessionView.class);
+        SessionView second = mock(SessionView.class);
+        when(second.getId()).thenReturn(8L);
+        when(second.getDate()).thenReturn(new Date(1700000000000L));
+        when(userService.findById(1L)).thenReturn(testUser);
+        when(sessionService.findPageForUser(1L, null, 3)).thenReturn(Arrays.asList(first, second, mock(SessionView.class)));
+        when(sessionMapper.viewsToDto(Arrays.asList(first, second))).thenReturn(Arrays.asList(new SessionDto(), new SessionDto()));
+
+        // When & Then
+        mockMvc.perform(get(BASE_URL + "/{id}/sessions", 1L).param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sessions", hasSize(2)))
+                .andExpect(jsonPath("$.nextCursor").value(SessionCursor.of(second).encode()));
+    }
+
+    @Test
+    void testShouldReturnNotFoundForSessionsOfUnknownUser() throws Exception {
+        // Given
+        when(userService.findById(999L)).thenReturn(null);
+
+        // When & Then
+        mockMvc.perform(get(BASE_URL + "/{id}/sessions", 999L))
+                .andExpect(status().isNotFound());
+
+        verify(sessionService, never()).findPageForUser(any(), any(), anyInt());
+    }
+
     @Test
     void testShouldReturnNotFoundWhenUserDoesNotExist() throws Exception {
         // Given
@@ -1,9 +1,11 @@
 package com.openclassrooms.starterjwt.mapper;
 
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.exception.UnknownUsersException;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.projection.SessionView;
 import com.openclassrooms.starterjwt.services.TeacherService;
 import com.openclassrooms.starterjwt.services.UserService;
 import org.junit.jupiter.api.Test;
@@ -17,6 +19,13 @@ import java.util.Collections;
 import java.util.Date;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @SpringBootTest
@@ -118,22 +127,22 @@ class SessionMapperTest {
     }
 
     @Test
-    void toEntity_WithNonExistentUsers_ShouldMapNullUsers() {
+    void toEntity_WithNonExistentUsers_ShouldReportUnknownIds() {
         // Arrange
         SessionDto dto = new SessionDto();
         dto.setId(1L);
         dto.setUsers(Arrays.asList(999L));
-        when(userService.findById(999L)).thenReturn(null);
+        when(userService.findAllById(anyCollection())).thenReturn(Collections.emptyList());
 
-        // Act
-        Session session = sessionMapper.toEntity(dto);
-
-        // Assert
-        assertThat(session.getUsers()).hasSize(1).containsExactly((User) null);
+        // Act & Assert
+        assertThatThrownBy(() -> sessionMapper.toEntity(dto))
+                .isInstanceOf(UnknownUsersException.class)
+                .extracting("userIds")
+                .isEqualTo(Collections.singletonList(999L));
     }
 
     @Test
-    void toEntity_WithMixedExistingAndNonExistingUsers_ShouldMapAllUsers() {
+    void toEntity_WithMixedExistingAndNonExistingUsers_ShouldReportOnlyUnknownIds() {
         // Arrange
         User existingUser = User.builder()
                 .id(1L)
@@ -146,19 +155,33 @@ class SessionMapperTest {
 
         SessionDto dto = new SessionDto();
         dto.setId(1L);
-        dto.setUsers(Arrays.asList(1L, 999L));
+        dto.setUsers(Arrays.asList(1L, 999L, 998L));
 
-        when(userService.findById(1L)).thenReturn(existingUser);
-        when(userService.findById(999L)).thenReturn(null);
+        when(userService.findAllById(anyCollection())).thenReturn(Collections.singletonList(existingUser));
+
+        // Act & Assert
+        assertThatThrownBy(() -> sessionMapper.toEntity(dto))
+                .isInstanceOf(UnknownUsersException.class)
+                .extracting("userIds")
+                .isEqualTo(Arrays.asList(999L, 998L));
+    }
+
+    @Test
+    void toEntity_WithManyUsers_ShouldResolveThemWithOneLookupInIdOrder() {
+        // Arrange
+        User first = User.builder().id(1L).email("a@test.com").firstName("A").lastName("A").password("p").admin(false).build();
+        User second = User.builder().id(2L).email("b@test.com").firstName("B").lastName("B").password("p").admin(false).build();
+        SessionDto dto = new SessionDto();
+        dto.setUsers(Arrays.asList(2L, 1L, 2L));
+        when(userService.findAllById(anyCollection())).thenReturn(Arrays.asList(first, second));
 
         // Act
         Session session = sessionMapper.toEntity(dto);
 
         // Assert
-        assertThat(session.getUsers())
-                .isNotNull()
-                .hasSize(2)
-                .containsExactly(existingUser, null);
+        assertThat(session.getUsers()).containsExactly(second, first);
+        verify(userService, times(1)).findAllById(anyCollection());
+        verify(userService, never()).findById(anyLong());
     }
 
     @Test
@@ -183,12 +206,12 @@ class SessionMapperTest {
                 .build();
 
         when(teacherService.findById(1L)).thenReturn(teacher);
-        when(userService.findById(1L)).thenReturn(user1);
+        when(userService.findAllById(anyCollection())).thenReturn(Collections.singletonList(user1));
 
         SessionDto dto = new SessionDto(
                 1L, "Test Session", sessionDate, 1L,
                 "Description", Arrays.asList(1L),
-                now, now
+                now, now, 12, 3L
         );
 
         // Act
@@ -202,6 +225,7 @@ class SessionMapperTest {
         assertThat(session.getTeacher()).isEqualTo(teacher);
         assertThat(session.getUsers()).hasSize(1);
         assertThat(session.getUsers().get(0)).isEqualTo(user1);
+        assertThat(session.getCapacity()).isEqualTo(12);
     }
 
     @Test
@@ -256,4 +280,47 @@ class SessionMapperTest {
         assertThat(dto.getTeacher_id()).isEqualTo(1L);
         assertThat(dto.getUsers()).containsExactly(1L, 2L);
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldMapViewToDto() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        Date sessionDate = new Date();
+        SessionView view = mock(SessionView.class);
+        when(view.getId()).thenReturn(1L);
+        when(view.getName()).thenReturn("Test Session");
+        when(view.getDate()).thenReturn(sessionDate);
+        when(view.getDescription()).thenReturn("Description");
+        when(view.getTeacherId()).thenReturn(4L);
+        when(view.getCapacity()).thenReturn(30);
+        when(view.getUserIds()).thenReturn("1,2");
+        when(view.getCreatedAt()).thenReturn(now);
+        when(view.getUpdatedAt()).thenReturn(now);
+
+        // Act
+        SessionDto dto = sessionMapper.viewToDto(view);
+
+        // Assert
+        assertThat(dto.getId()).isEqualTo(1L);
+        assertThat(dto.getName()).isEqualTo("Test Session");
+        assertThat(dto.getDate()).isEqualTo(sessionDate);
+        assertThat(dto.getDescription()).isEqualTo("Description");
+        assertThat(dto.getTeacher_id()).isEqualTo(4L);
+        assertThat(dto.getCapacity()).isEqualTo(30);
+        assertThat(dto.getUsers()).containsExactly(1L, 2L);
+        assertThat(dto.getCreatedAt()).isEqualTo(now);
+    }
+
+    @Test
+    void viewToDto_WithoutParticipants_ShouldMapEmptyUsers() {
+        // Arrange
+        SessionView view = mock(SessionView.class);
+        when(view.getUserIds()).thenReturn(null);
+
+        // Act
+        SessionDto dto = sessionMapper.viewToDto(view);
+
+        // Assert
+        assertThat(dto.getUsers()).isEmpty();
+    }
+}
@@ -0,0 +1,136 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.services.SecondLevelCacheStatistics;
+import com.openclassrooms.starterjwt.services.SessionService;
+import com.openclassrooms.starterjwt.services.TeacherService;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.Timestamp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class SecondLevelCacheTest {
+
+    private static final String NAME_PREFIX = "l2-";
+
+    @Autowired
+    private TeacherService teacherService;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private SecondLevelCacheStatistics cacheStatistics;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Statistics statistics;
+
+    private Long teacherId;
+
+    private Long sessionId;
+
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().unwrap(Cache.class).evictAllRegions();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.update("INSERT INTO TEACHERS (last_name, first_name) VALUES (?, ?)", NAME_PREFIX + "teacher", "Teacher");
+        teacherId = jdbcTemplate.queryForObject("SELECT id FROM TEACHERS WHERE last_name = ?", Long.class, NAME_PREFIX + "teacher");
+        jdbcTemplate.update("INSERT INTO SESSIONS (name, date, description, teacher_id, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?)",
+                NAME_PREFIX + "session", now, "Cache fixture", teacherId, now, now);
+        sessionId = jdbcTemplate.queryForObject("SELECT id FROM SESSIONS WHERE name = ?", Long.class, NAME_PREFIX + "session");
+        jdbcTemplate.update("INSERT INTO USERS (email, password, first_name, last_name, admin) VALUES (?, ?, ?, ?, false)",
+                NAME_PREFIX + "user@studio.com", "hash", "User", NAME_PREFIX + "user");
+        userId = jdbcTemplate.queryForObject("SELECT id FROM USERS WHERE last_name = ?", Long.class, NAME_PREFIX + "user");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM PARTICIPATE WHERE user_id = ?", userId);
+        jdbcTemplate.update("DELETE FROM SESSIONS WHERE teacher_id = ?", teacherId);
+        jdbcTemplate.update("DELETE FROM USERS WHERE id = ?", userId);
+        jdbcTemplate.update("DELETE FROM TEACHERS WHERE id = ?", teacherId);
+    }
+
+    @Test
+    void teacherReadsShouldBeServedFromCacheAfterFirstLoad() {
+        teacherService.findById(teacherId);
+        teacherService.findAll();
+
+        statistics.clear();
+        Teacher teacher = teacherService.findById(teacherId);
+        int teachers = teacherService.findAll().size();
+
+        assertThat(teacher.getLastName()).isEqualTo(NAME_PREFIX + "teacher");
+        assertThat(teachers).isEqualTo(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM TEACHERS", Integer.class));
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(cacheStatistics.getHitRatio()).isEqualTo(1d);
+        assertThat(cacheStatistics.getQueryCacheHitRatio()).isEqualTo(1d);
+    }
+
+    @Test
+    void sessionUpdateShouldReplaceCachedSession() {
+        Session session = sessionRepository.findById(sessionId).get();
+        session.setName(NAME_PREFIX + "renamed");
+
+        sessionService.update(sessionId, session);
+
+        assertThat(sessionRepository.findById(sessionId).get().getName()).isEqualTo(NAME_PREFIX + "renamed");
+    }
+
+    @Test
+    void participationWritesShouldInvalidateCachedParticipants() {
+        assertThat(participants()).isZero();
+
+        sessionService.participate(sessionId, userId);
+        assertThat(participants()).isEqualTo(1);
+        assertThat(sessionRepository.findById(sessionId).get().getParticipantCount()).isEqualTo(1);
+
+        sessionService.noLongerParticipate(sessionId, userId);
+        assertThat(participants()).isZero();
+    }
+
+    @Test
+    void sessionDeleteShouldEvictCachedSession() {
+        sessionRepository.findById(sessionId);
+
+        sessionService.delete(sessionId);
+
+        assertThat(sessionRepository.findById(sessionId)).isEmpty();
+    }
+
+    private int participants() {
+        return new TransactionTemplate(transactionManager)
+                .execute(status -> sessionRepository.findById(sessionId).get().getUsers().size());
+    }
+}
@@ -0,0 +1,162 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+class SessionRepositoryParticipationTest {
+
+    private static final String NAME_PREFIX = "pt-";
+
+    private static final int USERS = 200;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    private Long sessionId;
+
+    private List<Long> userIds;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.update("INSERT INTO SESSIONS (name, date, description, created_at, updated_at) VALUES (?, ?, ?, ?, ?)",
+                NAME_PREFIX + "session", now, "Participation fixture", now, now);
+        sessionId = jdbcTemplate.queryForObject("SELECT id FROM SESSIONS WHERE name = ?", Long.class, NAME_PREFIX + "session");
+
+        List<Object[]> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            users.add(new Object[]{NAME_PREFIX + i + "@studio.com", "hash", "User", NAME_PREFIX + i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO USERS (email, password, first_name, last_name, admin) VALUES (?, ?, ?, ?, false)", users);
+        userIds = jdbcTemplate.queryForList("SELECT id FROM USERS WHERE last_name LIKE 'pt-%' ORDER BY id", Long.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM PARTICIPATE WHERE session_id IN (SELECT id FROM SESSIONS WHERE name LIKE 'pt-%')");
+        jdbcTemplate.update("DELETE FROM SESSIONS WHERE name LIKE 'pt-%'");
+        jdbcTemplate.update("DELETE FROM USERS WHERE last_name LIKE 'pt-%'");
+        jdbcTemplate.update("DELETE FROM TEACHERS WHERE last_name LIKE 'pt-%'");
+    }
+
+    @Test
+    void addParticipantShouldUseOneStatementWhateverTheNumberOfParticipants() {
+        for (int i = 0; i < USERS - 1; i++) {
+            sessionRepository.addParticipant(sessionId, userIds.get(i));
+        }
+
+        statistics.clear();
+        int added = sessionRepository.addParticipant(sessionId, userIds.get(USERS - 1));
+
+        assertThat(added).isEqualTo(1);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1L);
+        assertThat(participants()).isEqualTo(USERS);
+    }
+
+    @Test
+    void addParticipantShouldRejectDuplicates() {
+        sessionRepository.addParticipant(sessionId, userIds.get(0));
+
+        assertThatThrownBy(() -> sessionRepository.addParticipant(sessionId, userIds.get(0)))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(participants()).isEqualTo(1);
+    }
+
+    @Test
+    void removeParticipantShouldOnlyDeleteOneRow() {
+        sessionRepository.addParticipant(sessionId, userIds.get(0));
+        sessionRepository.addParticipant(sessionId, userIds.get(1));
+
+        statistics.clear();
+        int removed = sessionRepository.removeParticipant(sessionId, userIds.get(0));
+
+        assertThat(removed).isEqualTo(1);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1L);
+        assertThat(sessionRepository.removeParticipant(sessionId, userIds.get(0))).isZero();
+        assertThat(participants()).isEqualTo(1);
+    }
+
+    @Test
+    void addParticipantsShouldInsertAllRows() {
+        int added = sessionRepository.addParticipants(sessionId, userIds);
+
+        assertThat(added).isEqualTo(USERS);
+        assertThat(participants()).isEqualTo(USERS);
+        assertThat(sessionRepository.findParticipantIds(sessionId, userIds.subList(0, 10))).hasSize(10);
+    }
+
+    @Test
+    void addParticipantsShouldRejectDuplicates() {
+        sessionRepository.addParticipant(sessionId, userIds.get(0));
+
+        assertThatThrownBy(() -> sessionRepository.addParticipants(sessionId, userIds.subList(0, 2)))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(participants()).isEqualTo(1);
+    }
+
+    @Test
+    void insertSessionsShouldReturnIdsInRowOrderAcrossBatches() {
+        jdbcTemplate.update("INSERT INTO TEACHERS (last_name, first_name) VALUES (?, ?)", NAME_PREFIX + "teacher", "Teacher");
+        Long teacherId = jdbcTemplate.queryForObject("SELECT id FROM TEACHERS WHERE last_name = ?", Long.class, NAME_PREFIX + "teacher");
+        List<Session> sessions = new ArrayList<>();
+        for (int i = 0; i < 1_200; i++) {
+            sessions.add(Session.builder()
+                    .name(NAME_PREFIX + "import-" + i)
+                    .date(new Date(1_700_000_000_000L + i * 60_000L))
+                    .description("Import fixture")
+                    .teacher(new Teacher().setId(teacherId))
+                    .capacity(i % 2 == 0 ? null : 10)
+                    .users(Arrays.asList(new User().setId(userIds.get(i % USERS)), new User().setId(userIds.get((i + 1) % USERS))))
+                    .build());
+        }
+
+        List<Long> ids = sessionRepository.insertSessions(sessions);
+
+        assertThat(ids).hasSize(1_200).doesNotHaveDuplicates();
+        for (int i : new int[]{0, 499, 500, 1_199}) {
+            assertThat(jdbcTemplate.queryForObject("SELECT name FROM SESSIONS WHERE id = ?", String.class, ids.get(i)))
+                    .isEqualTo(NAME_PREFIX + "import-" + i);
+            assertThat(jdbcTemplate.queryForObject("SELECT participant_count FROM SESSIONS WHERE id = ?", Integer.class, ids.get(i)))
+                    .isEqualTo(2);
+            assertThat(sessionRepository.findParticipantIds(ids.get(i), userIds))
+                    .containsExactlyInAnyOrder(userIds.get(i % USERS), userIds.get((i + 1) % USERS));
+        }
+    }
+
+    private int participants() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM PARTICIPATE WHERE session_id = ?", Integer.class, sessionId);
+    }
+}
@@ -0,0 +1,190 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.mapper.SessionMapper;
+import com.openclassrooms.starterjwt.repository.projection.SessionView;
+import com.openclassrooms.starterjwt.services.SessionCursor;
+import com.openclassrooms.starterjwt.services.SessionService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+class SessionRepositoryQueryCountTest {
+
+    private static final String NAME_PREFIX = "qc-";
+
+    private static final int TEACHERS = 5;
+
+    private static final int USERS = 20;
+
+    private static final int PARTICIPANTS_PER_SESSION = 3;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private SessionMapper sessionMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    private List<Long> teacherIds;
+
+    private List<Long> userIds;
+
+    private int sessionCount;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        for (int i = 0; i < TEACHERS; i++) {
+            jdbcTemplate.update("INSERT INTO TEACHERS (last_name, first_name) VALUES (?, ?)", NAME_PREFIX + i, "Teacher");
+        }
+        for (int i = 0; i < USERS; i++) {
+            jdbcTemplate.update("INSERT INTO USERS (email, password, first_name, last_name, admin) VALUES (?, ?, ?, ?, false)",
+                    NAME_PREFIX + i + "@studio.com", "hash", "User", NAME_PREFIX + i);
+        }
+        teacherIds = jdbcTemplate.queryForList("SELECT id FROM TEACHERS WHERE last_name LIKE 'qc-%'", Long.class);
+        userIds = jdbcTemplate.queryForList("SELECT id FROM USERS WHERE last_name LIKE 'qc-%'", Long.class);
+        sessionCount = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM SESSIONS", Integer.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM PARTICIPATE WHERE session_id IN (SELECT id FROM SESSIONS WHERE name LIKE 'qc-%')");
+        jdbcTemplate.update("DELETE FROM SESSIONS WHERE name LIKE 'qc-%'");
+        jdbcTemplate.update("DELETE FROM USERS WHERE last_name LIKE 'qc-%'");
+        jdbcTemplate.update("DELETE FROM TEACHERS WHERE last_name LIKE 'qc-%'");
+    }
+
+    @Test
+    void findAllViewsShouldUseSameNumberOfQueriesFor10And10000Sessions() {
+        growTo(10);
+        long smallCatalogQueries = countQueries(() -> sessionMapper.viewsToDto(sessionService.findAllViews()));
+
+        growTo(10_000);
+        List<SessionDto> dtos = new ArrayList<>();
+        long largeCatalogQueries = countQueries(() -> dtos.addAll(sessionMapper.viewsToDto(sessionService.findAllViews())));
+
+        assertThat(dtos).hasSize(10_000);
+        assertThat(dtos.get(dtos.size() - 1).getUsers()).hasSize(PARTICIPANTS_PER_SESSION);
+        assertThat(largeCatalogQueries).isEqualTo(smallCatalogQueries).isEqualTo(1L);
+    }
+
+    @Test
+    void findAllViewsShouldUseOneQueryWithoutLoadingEntities() {
+        growTo(10_000);
+        statistics.clear();
+
+        List<SessionDto> dtos = sessionMapper.viewsToDto(sessionService.findAllViews());
+
+        assertThat(dtos).hasSize(10_000);
+        assertThat(dtos.get(dtos.size() - 1).getUsers()).hasSize(PARTICIPANTS_PER_SESSION);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1L);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void findPageShouldUseSameNumberOfQueriesWhateverThePageSize() {
+        growTo(10_000);
+        long smallPageQueries = countQueries(() -> sessionMapper.viewsToDto(sessionService.findPage(null, 10)));
+
+        List<SessionView> page = new ArrayList<>();
+        long largePageQueries = countQueries(() -> page.addAll(sessionService.findPage(null, SessionService.MAX_PAGE_SIZE)));
+
+        assertThat(sessionMapper.viewsToDto(page)).hasSize(SessionService.MAX_PAGE_SIZE);
+        assertThat(largePageQueries).isEqualTo(smallPageQueries).isEqualTo(1L);
+    }
+
+    @Test
+    void findBetweenShouldListSessionsInDateOrderWithOneQuery() {
+        growTo(1_000);
+        List<SessionView> sessions = new ArrayList<>();
+
+        long queries = countQueries(() -> sessions.addAll(sessionService.findBetween(new Date(0L), null)));
+
+        assertThat(sessions).hasSize(1_000);
+        assertThat(sessions).isSortedAccordingTo(Comparator.comparing(SessionView::getDate).thenComparing(SessionView::getId));
+        assertThat(queries).isEqualTo(1L);
+    }
+
+    @Test
+    void forEachViewShouldStreamTheWholeCatalogWithOneQueryWithoutLoadingEntities() {
+        growTo(1_000);
+        List<Long> ids = new ArrayList<>();
+
+        long queries = countQueries(() -> sessionService.forEachView(view -> ids.add(view.getId())));
+
+        assertThat(ids).hasSize(1_000).isSorted();
+        assertThat(queries).isEqualTo(1L);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void findPageForUserShouldOnlyReadThatUsersSessions() {
+        growTo(10_000);
+        Long userId = userIds.get(0);
+        int booked = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM PARTICIPATE WHERE user_id = ?", Integer.class, userId);
+
+        List<SessionView> page = new ArrayList<>();
+        long queries = countQueries(() -> page.addAll(sessionService.findPageForUser(userId, null, SessionService.MAX_PAGE_SIZE)));
+        List<SessionView> next = sessionService.findPageForUser(userId, SessionCursor.of(page.get(page.size() - 1)), booked);
+
+        assertThat(page).hasSize(Math.min(booked, SessionService.MAX_PAGE_SIZE));
+        assertThat(page.size() + next.size()).isEqualTo(booked);
+        assertThat(page).allSatisfy(view -> assertThat(sessionMapper.viewToDto(view).getUsers()).contains(userId));
+        assertThat(queries).isEqualTo(1L);
+    }
+
+    private long countQueries(Runnable action) {
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void growTo(int total) {
+        List<Object[]> sessions = new ArrayList<>();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int i = sessionCount; i < total; i++) {
+            sessions.add(new Object[]{NAME_PREFIX + i, new Timestamp(now.getTime() + i * 60_000L), "Query count fixture",
+                    teacherIds.get(i % TEACHERS), now, now});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO SESSIONS (name, date, description, teacher_id, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?)",
+                sessions);
+
+        List<Long> newSessionIds = jdbcTemplate.queryForList(
+                "SELECT id FROM SESSIONS WHERE name LIKE 'qc-%' AND id NOT IN (SELECT session_id FROM PARTICIPATE)", Long.class);
+        List<Object[]> participations = new ArrayList<>();
+        for (Long sessionId : newSessionIds) {
+            for (int p = 0; p < PARTICIPANTS_PER_SESSION; p++) {
+                participations.add(new Object[]{sessionId, userIds.get((int) ((sessionId + p) % USERS))});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, ?)", participations);
+
+        sessionCount = total;
+    }
+}
@@ -0,0 +1,32 @@
+package com.openclassrooms.starterjwt.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BCryptStrengthCalibratorTest {
+
+    @Test
+    void shouldKeepMinimumStrengthWhenCalibrationIsDisabled() {
+        assertThat(BCryptStrengthCalibrator.calibrate(10, 14, 0L)).isEqualTo(10);
+        assertThat(BCryptStrengthCalibrator.calibrate(10, 10, 1_000L)).isEqualTo(10);
+    }
+
+    @Test
+    void shouldStayWithinBounds() {
+        // Act
+        int strength = BCryptStrengthCalibrator.calibrate(4, 6, 60_000L);
+
+        // Assert
+        assertThat(strength).isEqualTo(6);
+    }
+
+    @Test
+    void shouldNotGoAboveMinimumForATinyTarget() {
+        // Act
+        int strength = BCryptStrengthCalibrator.calibrate(8, 12, 1L);
+
+        // Assert
+        assertThat(strength).isEqualTo(8);
+    }
+}
@@ -1,7 +1,11 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
+import com.openclassrooms.starterjwt.security.services.UserDenyList;
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -11,6 +15,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -32,6 +37,12 @@ class AuthTokenFilterTest {
     @Mock
     private UserDetailsServiceImpl userDetailsService;
 
+    @Mock
+    private UserDetailsCache userDetailsCache;
+
+    @Mock
+    private UserDenyList userDenyList;
+
     @Mock
     private FilterChain filterChain;
 
@@ -59,8 +70,7 @@ class AuthTokenFilterTest {
 
         request.addHeader("Authorization", "Bearer " + token);
 
-        when(jwtUtils.validateJwtToken(token)).thenReturn(true);
-        when(jwtUtils.getUserNameFromJwtToken(token)).thenReturn(username);
+        when(jwtUtils.verifyJwtToken(token)).thenReturn(Jwts.claims().setSubject(username));
         when(userDetailsService.loadUserByUsername(username)).thenReturn(userDetails);
 
         // Act
@@ -70,6 +80,172 @@ class AuthTokenFilterTest {
         assertThat(SecurityContextHolder.getContext().getAuthentication()).isNotNull();
         assertThat(SecurityContextHolder.getContext().getAuthentication().getPrincipal())
                 .isEqualTo(userDetails);
+        verify(userDetailsCache).put(username, userDetails);
+        verify(filterChain).doFilter(any(HttpServletRequest.class), any(HttpServletResponse.class));
+    }
+
+    @Test
+    void testWithCachedPrincipalShouldNotLoadUser() throws ServletException, IOException {
+        // Arrange
+        String token = "valid.jwt.token";
+        String username = "test@test.com";
+        UserDetailsImpl userDetails = UserDetailsImpl.builder()
+                .id(1L)
+                .username(username)
+                .build();
+
+        request.addHeader("Authorization", "Bearer " + token);
+
+        when(jwtUtils.verifyJwtToken(token)).thenReturn(Jwts.claims().setSubject(username));
+        when(userDetailsCache.get(username)).thenReturn(userDetails);
+
+        // Act
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        // Assert
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getPrincipal())
+                .isEqualTo(userDetails);
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+        verify(filterChain).doFilter(any(HttpServletRequest.class), any(HttpServletResponse.class));
+    }
+
+    @Test
+    void testWithCachedPrincipalOfRevokedUserShouldNotSetAuthentication() throws ServletException, IOException {
+        // Arrange
+        String token = "valid.jwt.token";
+        String username = "test@test.com";
+        UserDetailsImpl userDetails = UserDetailsImpl.builder()
+                .id(1L)
+                .username(username)
+                .build();
+
+        request.addHeader("Authorization", "Bearer " + token);
+
+        when(jwtUtils.verifyJwtToken(token)).thenReturn(Jwts.claims().setSubject(username));
+        when(userDetailsCache.get(username)).thenReturn(userDetails);
+        when(userDenyList.isRevoked(1L)).thenReturn(true);
+
+        // Act
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        // Assert
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        verify(userDetailsCache).evict(username);
+        verify(filterChain).doFilter(any(HttpServletRequest.class), any(HttpServletResponse.class));
+    }
+
+    @Test
+    void testDeletionDuringLoadShouldNotLeaveUserCachedAndAuthenticated() throws ServletException, IOException {
+        // Arrange
+        String token = "valid.jwt.token";
+        String username = "test@test.com";
+        UserDetailsImpl userDetails = UserDetailsImpl.builder()
+                .id(1L)
+                .username(username)
+                .build();
+        UserDetailsCache cache = new UserDetailsCache(10, 60_000L);
+        UserDenyList denyList = new UserDenyList(60_000L);
+        AuthTokenFilter filter = new AuthTokenFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtils", jwtUtils);
+        ReflectionTestUtils.setField(filter, "userDetailsService", userDetailsService);
+        ReflectionTestUtils.setField(filter, "userDetailsCache", cache);
+        ReflectionTestUtils.setField(filter, "userDenyList", denyList);
+
+        request.addHeader("Authorization", "Bearer " + token);
+
+        when(jwtUtils.verifyJwtToken(token)).thenReturn(Jwts.claims().setSubject(username));
+        // The user is deleted after being loaded, before the filter caches them
+        when(userDetailsService.loadUserByUsername(username)).thenAnswer(invocation -> {
+            denyList.revoke(1L);
+            cache.evictById(1L);
+            return userDetails;
+        });
+
+        // Act
+        filter.doFilterInternal(request, response, filterChain);
+
+        // Assert
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        assertThat(cache.get(username)).isNull();
+        verify(filterChain).doFilter(any(HttpServletRequest.class), any(HttpServletResponse.class));
+    }
+
+    @Test
+    void testWithStatelessTokenShouldUseClaimsWithoutLoadingUser() throws ServletException, IOException {
+        // Arrange
+        String token = "valid.jwt.token";
+        UserDetailsImpl principal = UserDetailsImpl.builder()
+                .id(1L)
+                .username("test@test.com")
+                .admin(true)
+                .build();
+
+        request.addHeader("Authorization", "Bearer " + token);
+
+        Claims claims = Jwts.claims().setSubject("test@test.com");
+        when(jwtUtils.verifyJwtToken(token)).thenReturn(claims);
+        when(jwtUtils.isStatelessPrincipal()).thenReturn(true);
+        when(jwtUtils.getPrincipalFromClaims(claims)).thenReturn(principal);
+
+        // Act
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        // Assert
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).isSameAs(principal);
+        verify(userDenyList).isRevoked(1L);
+        verifyNoInteractions(userDetailsService, userDetailsCache);
+        verify(filterChain).doFilter(any(HttpServletRequest.class), any(HttpServletResponse.class));
+    }
+
+    @Test
+    void testWithStatelessTokenOfRevokedUserShouldNotSetAuthentication() throws ServletException, IOException {
+        // Arrange
+        String token = "valid.jwt.token";
+        UserDetailsImpl principal = UserDetailsImpl.builder()
+                .id(1L)
+                .username("test@test.com")
+                .build();
+
+        request.addHeader("Authorization", "Bearer " + token);
+
+        Claims claims = Jwts.claims().setSubject("test@test.com");
+        when(jwtUtils.verifyJwtToken(token)).thenReturn(claims);
+        when(jwtUtils.isStatelessPrincipal()).thenReturn(true);
+        when(jwtUtils.getPrincipalFromClaims(claims)).thenReturn(principal);
+        when(userDenyList.isRevoked(1L)).thenReturn(true);
+
+        // Act
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        // Assert
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+        verify(filterChain).doFilter(any(HttpServletRequest.class), any(HttpServletResponse.class));
+    }
+
+    @Test
+    void testWithLegacyTokenInStatelessModeShouldFallBackToUserLookup() throws ServletException, IOException {
+        // Arrange
+        String token = "valid.jwt.token";
+        String username = "test@test.com";
+        UserDetailsImpl userDetails = UserDetailsImpl.builder()
+                .id(1L)
+                .username(username)
+                .build();
+
+        request.addHeader("Authorization", "Bearer " + token);
+
+        Claims claims = Jwts.claims().setSubject(username);
+        when(jwtUtils.verifyJwtToken(token)).thenReturn(claims);
+        when(jwtUtils.isStatelessPrincipal()).thenReturn(true);
+        when(jwtUtils.getPrincipalFromClaims(claims)).thenReturn(null);
+        when(userDetailsService.loadUserByUsername(username)).thenReturn(userDetails);
+
+        // Act
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        // Assert
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).isEqualTo(userDetails);
         verify(filterChain).doFilter(any(HttpServletRequest.class), any(HttpServletResponse.class));
     }
 
@@ -79,7 +255,7 @@ class AuthTokenFilterTest {
         String token = "invalid.jwt.token";
         request.addHeader("Authorization", "Bearer " + token);
 
-        when(jwtUtils.validateJwtToken(token)).thenReturn(false);
+        when(jwtUtils.verifyJwtToken(token)).thenReturn(null);
 
         // Act
         authTokenFilter.doFilterInternal(request, response, filterChain);
@@ -98,7 +274,7 @@ class AuthTokenFilterTest {
         // Assert
         assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
         verify(filterChain).doFilter(any(HttpServletRequest.class), any(HttpServletResponse.class));
-        verify(jwtUtils, never()).validateJwtToken(anyString());
+        verify(jwtUtils, never()).verifyJwtToken(anyString());
         verify(userDetailsService, never()).loadUserByUsername(anyString());
     }
 
@@ -113,7 +289,7 @@ class AuthTokenFilterTest {
         // Assert
         assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
         verify(filterChain).doFilter(any(HttpServletRequest.class), any(HttpServletResponse.class));
-        verify(jwtUtils, never()).validateJwtToken(anyString());
+        verify(jwtUtils, never()).verifyJwtToken(anyString());
     }
 
     @Test
@@ -122,7 +298,7 @@ class AuthTokenFilterTest {
         String token = "valid.jwt.token";
         request.addHeader("Authorization", "Bearer " + token);
 
-        when(jwtUtils.validateJwtToken(token)).thenThrow(new RuntimeException("Token validation failed"));
+        when(jwtUtils.verifyJwtToken(token)).thenThrow(new RuntimeException("Token validation failed"));
 
         // Act
         authTokenFilter.doFilterInternal(request, response, filterChain);
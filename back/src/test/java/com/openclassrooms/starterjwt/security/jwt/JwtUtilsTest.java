@@ -1,6 +1,7 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import io.jsonwebtoken.Claims;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -123,4 +124,71 @@ class JwtUtilsTest {
         // Assert
         assertThat(username).isEqualTo("test@test.com");
     }
-}
\ No newline at end of file
+
+    @Test
+    void getPrincipalFromClaims_InStatelessMode_ShouldRebuildPrincipalFromClaims() {
+        // Arrange
+        ReflectionTestUtils.setField(jwtUtils, "statelessPrincipal", true);
+        UserDetailsImpl userDetails = UserDetailsImpl.builder()
+                .id(7L)
+                .username("test@test.com")
+                .firstName("John")
+                .lastName("Doe")
+                .admin(true)
+                .password("hash")
+                .build();
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        String token = jwtUtils.generateJwtToken(authentication);
+
+        // Act
+        UserDetailsImpl principal = jwtUtils.getPrincipalFromClaims(jwtUtils.verifyJwtToken(token));
+
+        // Assert
+        assertThat(jwtUtils.isStatelessPrincipal()).isTrue();
+        assertThat(principal.getId()).isEqualTo(7L);
+        assertThat(principal.getUsername()).isEqualTo("test@test.com");
+        assertThat(principal.getFirstName()).isEqualTo("John");
+        assertThat(principal.getLastName()).isEqualTo("Doe");
+        assertThat(principal.getAdmin()).isTrue();
+        assertThat(principal.getPassword()).isNull();
+    }
+
+    @Test
+    void getPrincipalFromClaims_WithoutClaims_ShouldReturnNull() {
+        // Arrange
+        UserDetailsImpl userDetails = UserDetailsImpl.builder()
+                .id(7L)
+                .username("test@test.com")
+                .build();
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        String token = jwtUtils.generateJwtToken(authentication);
+
+        // Act & Assert
+        assertThat(jwtUtils.getPrincipalFromClaims(jwtUtils.verifyJwtToken(token))).isNull();
+    }
+
+    @Test
+    void verifyJwtToken_WithValidToken_ShouldReturnClaimsAndCacheThem() {
+        // Arrange
+        UserDetailsImpl userDetails = UserDetailsImpl.builder()
+                .username("test@test.com")
+                .build();
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        String token = jwtUtils.generateJwtToken(authentication);
+
+        // Act
+        Claims first = jwtUtils.verifyJwtToken(token);
+        Claims second = jwtUtils.verifyJwtToken(token);
+
+        // Assert
+        assertThat(first.getSubject()).isEqualTo("test@test.com");
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    void verifyJwtToken_WithInvalidToken_ShouldReturnNull() {
+        // Act & Assert
+        assertThat(jwtUtils.verifyJwtToken("malformed.token.here")).isNull();
+        assertThat(jwtUtils.verifyJwtToken("")).isNull();
+    }
+}
@@ -0,0 +1,72 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VerifiedTokenCacheTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+
+    private final VerifiedTokenCache cache = new VerifiedTokenCache(2, now::get);
+
+    @Test
+    void shouldServeClaimsUntilTokenExpires() {
+        // Arrange
+        Claims claims = Jwts.claims().setSubject("test@test.com").setExpiration(new Date(1_100_000L));
+        cache.put("token", claims);
+
+        // Act & Assert
+        assertThat(cache.get("token")).isSameAs(claims);
+        assertThat(cache.get("other")).isNull();
+
+        now.set(1_100_000L);
+        assertThat(cache.get("token")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void shouldExpireAtTheWholeSecondStoredInTheToken() {
+        // Arrange: jjwt keeps exp in seconds, so the sub-second part of the expiration is dropped
+        Claims claims = Jwts.claims().setExpiration(new Date(1_100_500L));
+        cache.put("token", claims);
+
+        // Act & Assert
+        now.set(1_099_999L);
+        assertThat(cache.get("token")).isSameAs(claims);
+
+        now.set(1_100_000L);
+        assertThat(cache.get("token")).isNull();
+    }
+
+    @Test
+    void shouldKeepOnlyMostRecentlyUsedTokens() {
+        // Arrange
+        Date expiration = new Date(10_000_000L);
+        cache.put("a", Jwts.claims().setExpiration(expiration));
+        cache.put("b", Jwts.claims().setExpiration(expiration));
+        cache.get("a");
+
+        // Act
+        cache.put("c", Jwts.claims().setExpiration(expiration));
+
+        // Assert
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get("a")).isNotNull();
+        assertThat(cache.get("b")).isNull();
+    }
+
+    @Test
+    void shouldNotCacheTokensWithoutExpiration() {
+        // Act
+        cache.put("token", Jwts.claims().setSubject("test@test.com"));
+
+        // Assert
+        assertThat(cache.size()).isZero();
+    }
+}
@@ -0,0 +1,57 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LoginExecutorTest {
+
+    private final LoginExecutor loginExecutor = new LoginExecutor(1, 1);
+
+    @AfterEach
+    void tearDown() {
+        loginExecutor.shutdown();
+    }
+
+    @Test
+    void shouldRunSubmittedTask() throws Exception {
+        // Act & Assert
+        assertThat(loginExecutor.submit(() -> "done").get(5, TimeUnit.SECONDS)).isEqualTo("done");
+    }
+
+    @Test
+    void shouldRejectWorkWhenQueueIsFullAndReportDepth() throws Exception {
+        // Arrange
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        loginExecutor.execute(() -> {
+            started.countDown();
+            await(release);
+        });
+        started.await(5, TimeUnit.SECONDS);
+        loginExecutor.execute(() -> { });
+
+        // Act & Assert
+        assertThat(loginExecutor.getQueueDepth()).isEqualTo(1);
+        assertThat(loginExecutor.getActiveCount()).isEqualTo(1);
+        assertThatThrownBy(() -> loginExecutor.submit(() -> "too much"))
+                .isInstanceOf(RejectedExecutionException.class);
+        assertThat(loginExecutor.getRejectedCount()).isEqualTo(1L);
+
+        release.countDown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PasswordUpgraderTest {
+
+    @Mock
+    private PasswordEncoder passwordEncoder;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private UserDetailsCache userDetailsCache;
+
+    @Mock
+    private LoginExecutor loginExecutor;
+
+    @InjectMocks
+    private PasswordUpgrader passwordUpgrader;
+
+    private final UserDetailsImpl user = UserDetailsImpl.builder()
+            .id(1L)
+            .username("test@test.com")
+            .password("$2a$10$old")
+            .build();
+
+    @Test
+    void shouldRehashOutdatedPasswordInBackground() {
+        // Arrange
+        when(passwordEncoder.upgradeEncoding("$2a$10$old")).thenReturn(true);
+        when(passwordEncoder.encode("secret")).thenReturn("{bcrypt}$2a$12$new");
+        when(userRepository.updatePassword(1L, "$2a$10$old", "{bcrypt}$2a$12$new")).thenReturn(1);
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(loginExecutor).execute(any(Runnable.class));
+
+        // Act
+        passwordUpgrader.upgradeIfNeeded(user, "secret");
+
+        // Assert
+        verify(userRepository).updatePassword(1L, "$2a$10$old", "{bcrypt}$2a$12$new");
+        verify(userDetailsCache).evict("test@test.com");
+    }
+
+    @Test
+    void shouldLeaveUpToDatePasswordAlone() {
+        // Arrange
+        when(passwordEncoder.upgradeEncoding("$2a$10$old")).thenReturn(false);
+
+        // Act
+        passwordUpgrader.upgradeIfNeeded(user, "secret");
+
+        // Assert
+        verifyNoInteractions(loginExecutor, userRepository);
+    }
+
+    @Test
+    void shouldSkipUpgradeWhenExecutorIsSaturated() {
+        // Arrange
+        when(passwordEncoder.upgradeEncoding("$2a$10$old")).thenReturn(true);
+        doThrow(new RejectedExecutionException()).when(loginExecutor).execute(any(Runnable.class));
+
+        // Act
+        passwordUpgrader.upgradeIfNeeded(user, "secret");
+
+        // Assert
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void shouldNotEvictWhenPasswordChangedMeanwhile() {
+        // Arrange
+        when(passwordEncoder.encode("secret")).thenReturn("{bcrypt}$2a$12$new");
+        when(userRepository.updatePassword(1L, "$2a$10$old", "{bcrypt}$2a$12$new")).thenReturn(0);
+
+        // Act
+        passwordUpgrader.upgrade(user, "secret");
+
+        // Assert
+        verifyNoInteractions(userDetailsCache);
+    }
+}
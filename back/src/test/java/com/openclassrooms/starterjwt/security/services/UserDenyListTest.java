@@ -0,0 +1,42 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserDenyListTest {
+
+    private final AtomicLong now = new AtomicLong(1_000L);
+
+    private final UserDenyList denyList = new UserDenyList(100L, now::get);
+
+    @Test
+    void shouldRejectRevokedUserUntilTokensHaveExpired() {
+        // Act
+        denyList.revoke(1L);
+
+        // Assert
+        assertThat(denyList.isRevoked(1L)).isTrue();
+        assertThat(denyList.isRevoked(2L)).isFalse();
+
+        now.addAndGet(100L);
+        assertThat(denyList.isRevoked(1L)).isFalse();
+        assertThat(denyList.size()).isZero();
+    }
+
+    @Test
+    void shouldDropExpiredEntriesWhenRevoking() {
+        // Arrange
+        denyList.revoke(1L);
+        now.addAndGet(100L);
+
+        // Act
+        denyList.revoke(2L);
+
+        // Assert
+        assertThat(denyList.size()).isEqualTo(1);
+        assertThat(denyList.isRevoked(2L)).isTrue();
+    }
+}
@@ -0,0 +1,102 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserDetailsCacheTest {
+
+    private final AtomicLong now = new AtomicLong(1_000L);
+
+    private UserDetailsCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new UserDetailsCache(2, 100L, now::get);
+    }
+
+    @Test
+    void shouldReturnCachedPrincipalAndCountHitsAndMisses() {
+        // Arrange
+        UserDetailsImpl userDetails = principal(1L, "a@test.com");
+
+        // Act
+        UserDetailsImpl miss = cache.get("a@test.com");
+        cache.put("a@test.com", userDetails);
+        UserDetailsImpl hit = cache.get("a@test.com");
+
+        // Assert
+        assertThat(miss).isNull();
+        assertThat(hit).isSameAs(userDetails);
+        assertThat(cache.getMissCount()).isEqualTo(1L);
+        assertThat(cache.getHitCount()).isEqualTo(1L);
+    }
+
+    @Test
+    void shouldExpireEntriesAfterTtl() {
+        // Arrange
+        cache.put("a@test.com", principal(1L, "a@test.com"));
+
+        // Act
+        now.addAndGet(100L);
+
+        // Assert
+        assertThat(cache.get("a@test.com")).isNull();
+        assertThat(cache.size()).isZero();
+        assertThat(cache.getEvictionCount()).isEqualTo(1L);
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedEntryWhenFull() {
+        // Arrange
+        cache.put("a@test.com", principal(1L, "a@test.com"));
+        cache.put("b@test.com", principal(2L, "b@test.com"));
+        cache.get("a@test.com");
+
+        // Act
+        cache.put("c@test.com", principal(3L, "c@test.com"));
+
+        // Assert
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get("b@test.com")).isNull();
+        assertThat(cache.get("a@test.com")).isNotNull();
+        assertThat(cache.getEvictionCount()).isEqualTo(1L);
+    }
+
+    @Test
+    void shouldInvalidateByEmailAndById() {
+        // Arrange
+        cache.put("a@test.com", principal(1L, "a@test.com"));
+        cache.put("b@test.com", principal(2L, "b@test.com"));
+
+        // Act
+        cache.evict("a@test.com");
+        cache.evictById(2L);
+
+        // Assert
+        assertThat(cache.size()).isZero();
+        assertThat(cache.getEvictionCount()).isZero();
+    }
+
+    @Test
+    void shouldNotStoreAnythingWhenDisabled() {
+        // Arrange
+        UserDetailsCache disabled = new UserDetailsCache(0, 100L, now::get);
+
+        // Act
+        disabled.put("a@test.com", principal(1L, "a@test.com"));
+
+        // Assert
+        assertThat(disabled.size()).isZero();
+    }
+
+    private UserDetailsImpl principal(Long id, String email) {
+        return UserDetailsImpl.builder()
+                .id(id)
+                .username(email)
+                .build();
+    }
+}
@@ -1,7 +1,7 @@
 package com.openclassrooms.starterjwt.security.services;
 
-import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.projection.UserCredentials;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -22,6 +22,9 @@ public class UserDetailsServiceImplTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private UserCredentials credentials;
+
     @InjectMocks
     private UserDetailsServiceImpl userDetailsService;
 
@@ -29,14 +32,14 @@ public class UserDetailsServiceImplTest {
     void testShouldReturnUserDetailsWhenUserExists() {
         // Arrange
         String email = "test@test.com";
-        User user = new User();
-        user.setId(1L);
-        user.setEmail(email);
-        user.setFirstName("John");
-        user.setLastName("Doe");
-        user.setPassword("password123");
+        when(credentials.getId()).thenReturn(1L);
+        when(credentials.getEmail()).thenReturn(email);
+        when(credentials.getFirstName()).thenReturn("John");
+        when(credentials.getLastName()).thenReturn("Doe");
+        when(credentials.getPassword()).thenReturn("password123");
+        when(credentials.isAdmin()).thenReturn(true);
 
-        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
+        when(userRepository.findCredentialsByEmail(email)).thenReturn(Optional.of(credentials));
 
         // Act
         UserDetails result = userDetailsService.loadUserByUsername(email);
@@ -45,13 +48,14 @@ public class UserDetailsServiceImplTest {
         assertThat(result).isNotNull();
         assertThat(result).isInstanceOf(UserDetailsImpl.class);
         UserDetailsImpl userDetails = (UserDetailsImpl) result;
-        assertThat(userDetails.getId()).isEqualTo(user.getId());
-        assertThat(userDetails.getUsername()).isEqualTo(user.getEmail());
-        assertThat(userDetails.getFirstName()).isEqualTo(user.getFirstName());
-        assertThat(userDetails.getLastName()).isEqualTo(user.getLastName());
-        assertThat(userDetails.getPassword()).isEqualTo(user.getPassword());
+        assertThat(userDetails.getId()).isEqualTo(1L);
+        assertThat(userDetails.getUsername()).isEqualTo(email);
+        assertThat(userDetails.getFirstName()).isEqualTo("John");
+        assertThat(userDetails.getLastName()).isEqualTo("Doe");
+        assertThat(userDetails.getPassword()).isEqualTo("password123");
+        assertThat(userDetails.getAdmin()).isTrue();
 
-        verify(userRepository).findByEmail(email);
+        verify(userRepository).findCredentialsByEmail(email);
         verifyNoMoreInteractions(userRepository);
     }
 
@@ -59,7 +63,7 @@ public class UserDetailsServiceImplTest {
     void testShouldThrowExceptionWhenUserNotFound() {
         // Arrange
         String email = "nonexistent@test.com";
-        when(userRepository.findByEmail(email)).thenReturn(Optional.empty());
+        when(userRepository.findCredentialsByEmail(email)).thenReturn(Optional.empty());
 
         // Act & Assert
         UsernameNotFoundException exception = assertThrows(
@@ -68,7 +72,7 @@ public class UserDetailsServiceImplTest {
         );
 
         assertThat(exception.getMessage()).isEqualTo("User Not Found with email: " + email);
-        verify(userRepository).findByEmail(email);
+        verify(userRepository).findCredentialsByEmail(email);
         verifyNoMoreInteractions(userRepository);
     }
-}
\ No newline at end of file
+}
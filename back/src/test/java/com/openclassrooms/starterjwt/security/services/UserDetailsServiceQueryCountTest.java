@@ -0,0 +1,58 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+class UserDetailsServiceQueryCountTest {
+
+    private static final String EMAIL = "lq-admin@studio.com";
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        jdbcTemplate.update("INSERT INTO USERS (email, password, first_name, last_name, admin) VALUES (?, 'hash', 'Admin', 'lq-admin', true)",
+                EMAIL);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM USERS WHERE last_name LIKE 'lq-%'");
+    }
+
+    @Test
+    void loadUserByUsernameShouldUseOneQueryWithoutLoadingEntities() {
+        statistics.clear();
+
+        UserDetailsImpl userDetails = (UserDetailsImpl) userDetailsService.loadUserByUsername(EMAIL);
+
+        assertThat(userDetails.getUsername()).isEqualTo(EMAIL);
+        assertThat(userDetails.getPassword()).isEqualTo("hash");
+        assertThat(userDetails.getAdmin()).isTrue();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1L);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+}
@@ -0,0 +1,52 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.repository.projection.SessionView;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SessionCursorTest {
+
+    @Test
+    void shouldRoundTripThroughEncodedToken() {
+        // Arrange
+        SessionCursor cursor = new SessionCursor(new Date(1700000000123L), 42L);
+
+        // Act
+        SessionCursor decoded = SessionCursor.decode(cursor.encode());
+
+        // Assert
+        assertThat(decoded).isEqualTo(cursor);
+        assertThat(decoded.getDate().getTime()).isEqualTo(1700000000123L);
+        assertThat(decoded.getId()).isEqualTo(42L);
+    }
+
+    @Test
+    void shouldBuildCursorFromSession() {
+        // Arrange
+        Date date = new Date();
+        SessionView session = mock(SessionView.class);
+        when(session.getId()).thenReturn(3L);
+        when(session.getDate()).thenReturn(date);
+
+        // Act
+        SessionCursor cursor = SessionCursor.of(session);
+
+        // Assert
+        assertThat(cursor.getDate()).isEqualTo(date);
+        assertThat(cursor.getId()).isEqualTo(3L);
+    }
+
+    @Test
+    void shouldRejectMalformedTokens() {
+        assertThatThrownBy(() -> SessionCursor.decode("%%%")).isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> SessionCursor.decode("bm9zZXBhcmF0b3I")).isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> SessionCursor.decode("YWJjOmRlZg")).isInstanceOf(BadRequestException.class);
+    }
+}
@@ -0,0 +1,130 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.response.SessionImportResponse;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import javax.validation.Validation;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SessionImportServiceTest {
+
+    @Mock
+    private SessionRepository sessionRepository;
+
+    @Mock
+    private TeacherRepository teacherRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private SessionImportService sessionImportService;
+
+    @BeforeEach
+    void setUp() {
+        sessionImportService = new SessionImportService(sessionRepository, teacherRepository, userRepository,
+                Validation.buildDefaultValidatorFactory().getValidator(), eventPublisher, 3);
+    }
+
+    @Test
+    void shouldLookUpTeachersAndUsersOnceAndInsertEverySession() {
+        // Arrange
+        when(teacherRepository.findAllById(anySet())).thenReturn(Collections.singletonList(new Teacher().setId(1L)));
+        when(userRepository.findAllActiveById(anySet())).thenReturn(Arrays.asList(new User().setId(10L), new User().setId(11L)));
+        when(sessionRepository.insertSessions(anyList())).thenReturn(Arrays.asList(100L, 101L));
+
+        // Act
+        SessionImportResponse response = sessionImportService.importSessions(Arrays.asList(
+                row("Yoga", 1L, Arrays.asList(10L, 11L, 10L)),
+                row("Pilates", 1L, Collections.singletonList(11L))));
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Session>> sessions = ArgumentCaptor.forClass(List.class);
+        verify(sessionRepository).insertSessions(sessions.capture());
+        assertThat(sessions.getValue()).extracting(Session::getName).containsExactly("Yoga", "Pilates");
+        assertThat(sessions.getValue().get(0).getUsers()).extracting(User::getId).containsExactly(10L, 11L);
+        assertThat(response.getIds()).containsExactly(100L, 101L);
+        assertThat(response.getErrors()).isEmpty();
+        verify(teacherRepository, times(1)).findAllById(anySet());
+        verify(userRepository, times(1)).findAllActiveById(anySet());
+        verify(eventPublisher).publishEvent(any(SessionChangedEvent.class));
+    }
+
+    @Test
+    void shouldReportEveryInvalidRowAndInsertNothing() {
+        // Arrange
+        when(teacherRepository.findAllById(anySet())).thenReturn(Collections.singletonList(new Teacher().setId(1L)));
+        when(userRepository.findAllActiveById(anySet())).thenReturn(Collections.singletonList(new User().setId(10L)));
+        SessionDto full = row("Full", 1L, Collections.singletonList(10L));
+        full.setCapacity(0);
+
+        // Act
+        SessionImportResponse response = sessionImportService.importSessions(Arrays.asList(
+                row("Yoga", 1L, null),
+                row("", 2L, Collections.singletonList(99L)),
+                full));
+
+        // Assert
+        assertThat(response.getIds()).isEmpty();
+        assertThat(response.getErrors()).containsOnlyKeys(2, 3);
+        assertThat(response.getErrors().get(2))
+                .contains("teacher_id 2 does not exist", "users 99 does not exist")
+                .anyMatch(error -> error.startsWith("name "));
+        assertThat(response.getErrors().get(3)).anyMatch(error -> error.startsWith("capacity "));
+        verify(sessionRepository, never()).insertSessions(anyList());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void shouldRejectEmptyOrOversizedImports() {
+        // Arrange
+        SessionDto session = row("Yoga", 1L, null);
+
+        // Act & Assert
+        assertThatThrownBy(() -> sessionImportService.importSessions(Collections.emptyList()))
+                .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> sessionImportService.importSessions(Arrays.asList(session, session, session, session)))
+                .isInstanceOf(BadRequestException.class);
+    }
+
+    private SessionDto row(String name, Long teacherId, List<Long> users) {
+        SessionDto session = new SessionDto();
+        session.setName(name);
+        session.setDate(new Date());
+        session.setTeacher_id(teacherId);
+        session.setDescription("Imported session");
+        session.setUsers(users);
+        return session;
+    }
+}
@@ -0,0 +1,158 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.mapper.SessionMapper;
+import com.openclassrooms.starterjwt.repository.projection.SessionView;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class SessionListSnapshotTest {
+
+    @Mock
+    private SessionService sessionService;
+
+    @Mock
+    private SessionMapper sessionMapper;
+
+    private final AtomicLong now = new AtomicLong(1_000L);
+
+    private SessionListSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        snapshot = new SessionListSnapshot(sessionService, sessionMapper, 100L, now::get);
+    }
+
+    @Test
+    void shouldBuildOnceAndServeFromMemory() {
+        // Arrange
+        givenSessions(dto(1L, "Yoga"), dto(2L, "Pilates"));
+
+        // Act
+        SessionListSnapshot.Snapshot first = snapshot.current();
+        SessionListSnapshot.Snapshot second = snapshot.current();
+
+        // Assert
+        assertThat(second).isSameAs(first);
+        assertThat(first.getSessions()).extracting(SessionDto::getName).containsExactly("Yoga", "Pilates");
+        verify(sessionService, times(1)).findAllViews();
+    }
+
+    @Test
+    void shouldPatchOnlyTheChangedSessionAndChangeEtag() {
+        // Arrange
+        givenSessions(dto(1L, "Yoga"), dto(2L, "Pilates"));
+        SessionListSnapshot.Snapshot before = snapshot.current();
+        SessionView view = mock(SessionView.class);
+        when(sessionService.findViewById(2L)).thenReturn(view);
+        when(sessionMapper.viewToDto(view)).thenReturn(dto(2L, "Stretching"));
+
+        // Act
+        snapshot.onSessionChanged(new SessionChangedEvent(2L));
+        SessionListSnapshot.Snapshot after = snapshot.current();
+
+        // Assert
+        assertThat(after.getSessions()).extracting(SessionDto::getName).containsExactly("Yoga", "Stretching");
+        assertThat(after.getEtag()).isNotEqualTo(before.getEtag());
+        assertThat(before.getSessions()).extracting(SessionDto::getName).containsExactly("Yoga", "Pilates");
+        verify(sessionService, times(1)).findAllViews();
+    }
+
+    @Test
+    void shouldKeepSearchIndexInStepWithChanges() {
+        // Arrange
+        givenSessions(dto(1L, "Yoga"), dto(2L, "Pilates"));
+        SessionView view = mock(SessionView.class);
+        when(sessionService.findViewById(2L)).thenReturn(view);
+        when(sessionMapper.viewToDto(view)).thenReturn(dto(2L, "Yoga flow"));
+
+        // Act
+        int before = snapshot.search("yoga", 10).size();
+        snapshot.onSessionChanged(new SessionChangedEvent(2L));
+
+        // Assert
+        assertThat(before).isEqualTo(1);
+        assertThat(snapshot.search("yoga", 10)).extracting(SessionDto::getId).containsExactlyInAnyOrder(1L, 2L);
+    }
+
+    @Test
+    void shouldRemoveDeletedSession() {
+        // Arrange
+        givenSessions(dto(1L, "Yoga"), dto(2L, "Pilates"));
+        snapshot.current();
+        when(sessionService.findViewById(1L)).thenReturn(null);
+
+        // Act
+        snapshot.onSessionChanged(new SessionChangedEvent(1L));
+
+        // Assert
+        assertThat(snapshot.current().getSessions()).extracting(SessionDto::getId).containsExactly(2L);
+    }
+
+    @Test
+    void shouldRebuildWhenOlderThanMaxAge() {
+        // Arrange
+        givenSessions(dto(1L, "Yoga"));
+        SessionListSnapshot.Snapshot first = snapshot.current();
+
+        // Act
+        now.addAndGet(100L);
+        SessionListSnapshot.Snapshot second = snapshot.current();
+
+        // Assert
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getEtag()).isNotEqualTo(first.getEtag());
+        verify(sessionService, times(2)).findAllViews();
+    }
+
+    @Test
+    void shouldKeepSessionsInDateOrderAndSliceFromDate() {
+        // Arrange
+        givenSessions(dto(1L, "Later", new Date(3_000L)), dto(2L, "Past", new Date(1_000L)), dto(3L, "Soon", new Date(2_000L)));
+
+        // Act
+        SessionListSnapshot.Snapshot all = snapshot.current();
+        SessionListSnapshot.Snapshot upcoming = all.from(new Date(2_000L));
+
+        // Assert
+        assertThat(all.getSessions()).extracting(SessionDto::getName).containsExactly("Past", "Soon", "Later");
+        assertThat(upcoming.getSessions()).extracting(SessionDto::getName).containsExactly("Soon", "Later");
+        assertThat(upcoming.getEtag()).isNotEqualTo(all.getEtag());
+        assertThat(all.from(new Date(0L))).isSameAs(all);
+        assertThat(all.from(new Date(5_000L)).getSessions()).isEmpty();
+    }
+
+    private void givenSessions(SessionDto... sessions) {
+        List<SessionView> views = Collections.emptyList();
+        when(sessionService.findAllViews()).thenReturn(views);
+        when(sessionMapper.viewsToDto(views)).thenReturn(Arrays.asList(sessions));
+    }
+
+    private SessionDto dto(Long id, String name) {
+        return dto(id, name, null);
+    }
+
+    private SessionDto dto(Long id, String name, Date date) {
+        SessionDto dto = new SessionDto();
+        dto.setId(id);
+        dto.setName(name);
+        dto.setDate(date);
+        return dto;
+    }
+}
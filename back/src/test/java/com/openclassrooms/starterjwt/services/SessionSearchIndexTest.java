@@ -0,0 +1,71 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SessionSearchIndexTest {
+
+    private SessionSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new SessionSearchIndex();
+        index.replaceAll(Arrays.asList(
+                session(1L, "Vinyasa flow", "Dynamic yoga linking breath and movement"),
+                session(2L, "Yoga nidra", "Guided relaxation, lying down"),
+                session(3L, "Pilates", "Core strength, with a short yoga cool-down"),
+                session(4L, "Méditation", "Respiration et pleine conscience")));
+    }
+
+    @Test
+    void shouldRankNameMatchesAboveDescriptionMatches() {
+        // Act & Assert
+        assertThat(index.search("yoga", 10)).extracting(SessionDto::getId).containsExactly(2L, 1L, 3L);
+    }
+
+    @Test
+    void shouldMatchPrefixesAndRequireEveryTerm() {
+        // Act & Assert
+        assertThat(index.search("yog relax", 10)).extracting(SessionDto::getId).containsExactly(2L);
+        assertThat(index.search("yoga swimming", 10)).isEmpty();
+    }
+
+    @Test
+    void shouldIgnoreCaseAndAccents() {
+        // Act & Assert
+        assertThat(index.search("MEDITATION", 10)).extracting(SessionDto::getId).containsExactly(4L);
+        assertThat(index.search("médit", 10)).extracting(SessionDto::getId).containsExactly(4L);
+    }
+
+    @Test
+    void shouldFollowUpdatesAndRemovals() {
+        // Act
+        index.put(session(3L, "Pilates", "Core strength"));
+        index.remove(2L);
+
+        // Assert
+        assertThat(index.search("yoga", 10)).extracting(SessionDto::getId).containsExactly(1L);
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldLimitResultsAndIgnoreBlankQueries() {
+        // Act & Assert
+        assertThat(index.search("yoga", 2)).hasSize(2);
+        assertThat(index.search(" , ", 10)).isEmpty();
+        assertThat(index.search(null, 10)).isEmpty();
+    }
+
+    private SessionDto session(Long id, String name, String description) {
+        SessionDto session = new SessionDto();
+        session.setId(id);
+        session.setName(name);
+        session.setDescription(description);
+        return session;
+    }
+}
@@ -0,0 +1,332 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.SessionFullException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The JCache manager behind the second-level cache is shared by the whole JVM, so it is turned off for this other database
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:bookingdb;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE;LOCK_TIMEOUT=30000",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"})
+@ActiveProfiles("test")
+class SessionServiceConcurrencyTest {
+
+    private static final String NAME_PREFIX = "cc-";
+
+    private static final int USERS = 2_000;
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private List<Long> userIds;
+
+    @BeforeEach
+    void setUp() {
+        List<Object[]> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            users.add(new Object[]{NAME_PREFIX + i + "@studio.com", "hash", "User", NAME_PREFIX + i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO USERS (email, password, first_name, last_name, admin) VALUES (?, ?, ?, ?, false)", users);
+        userIds = jdbcTemplate.queryForList("SELECT id FROM USERS WHERE last_name LIKE 'cc-%' ORDER BY id", Long.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM WAITLIST WHERE session_id IN (SELECT id FROM SESSIONS WHERE name LIKE 'cc-%')");
+        jdbcTemplate.update("DELETE FROM PARTICIPATE WHERE session_id IN (SELECT id FROM SESSIONS WHERE name LIKE 'cc-%')");
+        jdbcTemplate.update("DELETE FROM SESSIONS WHERE name LIKE 'cc-%'");
+        jdbcTemplate.update("DELETE FROM USERS WHERE last_name LIKE 'cc-%'");
+    }
+
+    @Test
+    void concurrentBookingsShouldNeverExceedCapacity() throws Exception {
+        Long sessionId = createSession("full", 50);
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+
+        runConcurrently(userIds, userId -> {
+            try {
+                sessionService.participate(sessionId, userId);
+                booked.incrementAndGet();
+            } catch (SessionFullException e) {
+                refused.incrementAndGet();
+            }
+        });
+
+        assertThat(booked.get()).isEqualTo(50);
+        assertThat(refused.get()).isEqualTo(USERS - 50);
+        assertThat(participantRows(sessionId)).isEqualTo(50);
+        assertThat(participantCount(sessionId)).isEqualTo(50);
+    }
+
+    @Test
+    void concurrentBookingsShouldNotLoseAnyParticipant() throws Exception {
+        Long sessionId = createSession("open", null);
+
+        runConcurrently(userIds, userId -> sessionService.participate(sessionId, userId));
+
+        assertThat(participantRows(sessionId)).isEqualTo(USERS);
+        assertThat(participantCount(sessionId)).isEqualTo(USERS);
+    }
+
+    @Test
+    void concurrentDuplicateBookingsShouldKeepOneParticipation() throws Exception {
+        Long sessionId = createSession("duplicate", 10);
+        Long userId = userIds.get(0);
+        List<Long> sameUser = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            sameUser.add(userId);
+        }
+        AtomicInteger booked = new AtomicInteger();
+
+        runConcurrently(sameUser, id -> {
+            try {
+                sessionService.participate(sessionId, id);
+                booked.incrementAndGet();
+            } catch (BadRequestException e) {
+                // already participating
+            }
+        });
+
+        assertThat(booked.get()).isEqualTo(1);
+        assertThat(participantRows(sessionId)).isEqualTo(1);
+        assertThat(participantCount(sessionId)).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentBookingsAndCancellationsShouldKeepCounterInSync() throws Exception {
+        Long sessionId = createSession("churn", 100);
+        List<Long> firstHalf = userIds.subList(0, 100);
+        runConcurrently(firstHalf, userId -> sessionService.participate(sessionId, userId));
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Long userId : firstHalf) {
+            tasks.add(() -> {
+                sessionService.noLongerParticipate(sessionId, userId);
+                return null;
+            });
+        }
+        for (Long userId : userIds.subList(100, 300)) {
+            tasks.add(() -> {
+                try {
+                    sessionService.participate(sessionId, userId);
+                } catch (SessionFullException e) {
+                    // a cancellation has not freed a seat yet
+                }
+                return null;
+            });
+        }
+        invokeAll(tasks);
+
+        assertThat(participantCount(sessionId)).isEqualTo(participantRows(sessionId)).isLessThanOrEqualTo(100);
+    }
+
+    @Test
+    void concurrentPatchesOfTheSameVersionShouldApplyOnlyOne() throws Exception {
+        Long sessionId = createSession("edit", null);
+        sessionService.participate(sessionId, userIds.get(0));
+        AtomicInteger applied = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            SessionDto changes = new SessionDto();
+            changes.setDescription("Edited by admin " + i);
+            changes.setVersion(0L);
+            tasks.add(() -> {
+                try {
+                    sessionService.patch(sessionId, changes, Collections.singleton("description"));
+                    applied.incrementAndGet();
+                } catch (OptimisticLockingFailureException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        invokeAll(tasks);
+
+        assertThat(applied.get()).isEqualTo(1);
+        assertThat(rejected.get()).isEqualTo(THREADS - 1);
+        assertThat(jdbcTemplate.queryForObject("SELECT version FROM SESSIONS WHERE id = ?", Long.class, sessionId)).isEqualTo(1L);
+        assertThat(participantRows(sessionId)).isEqualTo(participantCount(sessionId)).isEqualTo(1);
+    }
+
+    @Test
+    void patchingParticipantsDuringBookingsShouldNeverExceedCapacity() throws Exception {
+        Long sessionId = createSession("patched", 10);
+        runConcurrently(userIds.subList(0, 5), userId -> sessionService.participate(sessionId, userId));
+        SessionDto changes = new SessionDto();
+        changes.setUsers(new ArrayList<>(userIds.subList(0, 10)));
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        tasks.add(() -> {
+            sessionService.patch(sessionId, changes, Collections.singleton("users"));
+            return null;
+        });
+        for (Long userId : userIds.subList(10, 60)) {
+            tasks.add(() -> {
+                try {
+                    sessionService.participate(sessionId, userId);
+                } catch (SessionFullException e) {
+                    // the patch or other bookings took the last seats
+                }
+                return null;
+            });
+        }
+        invokeAll(tasks);
+
+        assertThat(participantRows(sessionId)).isEqualTo(participantCount(sessionId)).isLessThanOrEqualTo(10);
+    }
+
+    @Test
+    void removingUsersFromSessionsDuringBookingsShouldKeepCountersInSync() throws Exception {
+        List<Long> sessionIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            sessionIds.add(createSession("purged-" + i, 20));
+        }
+        List<Long> leaving = userIds.subList(0, 20);
+        for (Long sessionId : sessionIds) {
+            runConcurrently(leaving, userId -> sessionService.participate(sessionId, userId));
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Long userId : leaving) {
+            tasks.add(() -> {
+                while (sessionService.removeFromSessions(userId, 2) > 0) {
+                    // next chunk
+                }
+                return null;
+            });
+        }
+        for (Long userId : userIds.subList(20, 80)) {
+            for (Long sessionId : sessionIds) {
+                tasks.add(() -> {
+                    try {
+                        sessionService.participate(sessionId, userId);
+                    } catch (SessionFullException e) {
+                        // no seat freed yet
+                    }
+                    return null;
+                });
+            }
+        }
+        invokeAll(tasks);
+
+        for (Long sessionId : sessionIds) {
+            assertThat(participantCount(sessionId)).isEqualTo(participantRows(sessionId)).isLessThanOrEqualTo(20);
+        }
+    }
+
+    @Test
+    void raisingCapacityShouldPromoteWaitingUsersInOrder() {
+        Long sessionId = createSession("raised", 1);
+        sessionService.participate(sessionId, userIds.get(0));
+        for (Long userId : userIds.subList(1, 5)) {
+            sessionService.participateOrWait(sessionId, userId);
+        }
+        SessionDto changes = new SessionDto();
+        changes.setCapacity(3);
+
+        sessionService.patch(sessionId, changes, Collections.singleton("capacity"));
+
+        assertThat(jdbcTemplate.queryForList("SELECT user_id FROM PARTICIPATE WHERE session_id = ? ORDER BY user_id", Long.class, sessionId))
+                .containsExactlyElementsOf(userIds.subList(0, 3));
+        assertThat(participantCount(sessionId)).isEqualTo(3);
+        assertThat(sessionService.getWaitlist(sessionId)).containsExactlyElementsOf(userIds.subList(3, 5));
+    }
+
+    @Test
+    void removingParticipantsByPatchShouldPromoteWaitingUsers() {
+        Long sessionId = createSession("trimmed", 2);
+        sessionService.participate(sessionId, userIds.get(0));
+        sessionService.participate(sessionId, userIds.get(1));
+        sessionService.participateOrWait(sessionId, userIds.get(2));
+        SessionDto changes = new SessionDto();
+        changes.setUsers(new ArrayList<>(userIds.subList(0, 1)));
+
+        sessionService.patch(sessionId, changes, Collections.singleton("users"));
+
+        assertThat(jdbcTemplate.queryForList("SELECT user_id FROM PARTICIPATE WHERE session_id = ? ORDER BY user_id", Long.class, sessionId))
+                .containsExactly(userIds.get(0), userIds.get(2));
+        assertThat(participantCount(sessionId)).isEqualTo(2);
+        assertThat(sessionService.getWaitlist(sessionId)).isEmpty();
+    }
+
+    private Long createSession(String name, Integer capacity) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.update("INSERT INTO SESSIONS (name, date, description, capacity, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?)",
+                NAME_PREFIX + name, now, "Concurrency fixture", capacity, now, now);
+        return jdbcTemplate.queryForObject("SELECT id FROM SESSIONS WHERE name = ?", Long.class, NAME_PREFIX + name);
+    }
+
+    private int participantRows(Long sessionId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM PARTICIPATE WHERE session_id = ?", Integer.class, sessionId);
+    }
+
+    private int participantCount(Long sessionId) {
+        return jdbcTemplate.queryForObject("SELECT participant_count FROM SESSIONS WHERE id = ?", Integer.class, sessionId);
+    }
+
+    private void runConcurrently(List<Long> ids, Booking booking) throws Exception {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Long id : ids) {
+            tasks.add(() -> {
+                booking.run(id);
+                return null;
+            });
+        }
+        invokeAll(tasks);
+    }
+
+    private void invokeAll(List<Callable<Void>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> task : tasks) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private interface Booking {
+        void run(Long userId);
+    }
+}
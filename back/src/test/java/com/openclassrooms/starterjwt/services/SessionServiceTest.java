@@ -1,24 +1,49 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.dto.SessionDto;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.exception.SessionFullException;
+import com.openclassrooms.starterjwt.exception.UnknownUsersException;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.projection.SessionView;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -31,6 +56,18 @@ public class SessionServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private TeacherRepository teacherRepository;
+
+    @Mock
+    private WaitlistService waitlistService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
     @InjectMocks
     private SessionService sessionService;
 
@@ -48,6 +85,7 @@ public class SessionServiceTest {
         assertThat(result).isNotNull();
         assertThat(result.getName()).isEqualTo("Test Session");
         verify(sessionRepository).save(session);
+        verify(sessionRepository).refreshParticipantCount(result.getId());
     }
 
     @Test
@@ -55,46 +93,150 @@ public class SessionServiceTest {
         // Arrange
         Long sessionId = 1L;
 
+        when(sessionRepository.deleteSessions(Collections.singletonList(sessionId))).thenReturn(1);
+
+        // Act
+        boolean deleted = sessionService.delete(sessionId);
+
+        // Assert
+        assertThat(deleted).isTrue();
+        verify(waitlistService).deleteAll(Collections.singletonList(sessionId));
+        verify(sessionRepository).removeAllParticipants(Collections.singletonList(sessionId));
+        verify(sessionRepository, never()).findById(any());
+        verify(sessionRepository, never()).deleteById(any());
+        verify(eventPublisher).publishEvent(any(SessionChangedEvent.class));
+    }
+
+    @Test
+    void shouldRemoveUserFromSessionsAndPromoteWaitlist() {
+        // Arrange
+        List<Long> sessionIds = Arrays.asList(1L, 2L);
+        when(sessionRepository.findSessionIdsOfUser(5L, PageRequest.of(0, 2))).thenReturn(sessionIds);
+        when(sessionRepository.removeUserFromSessions(5L, sessionIds)).thenReturn(2);
+        when(waitlistService.hasWaiting(1L)).thenReturn(true);
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(1);
+        when(waitlistService.pollNext(1L)).thenReturn(3L);
+        when(userRepository.existsByIdAndDeletedAtIsNull(3L)).thenReturn(true);
+
+        // Act
+        int removed = sessionService.removeFromSessions(5L, 2);
+
+        // Assert
+        assertThat(removed).isEqualTo(2);
+        InOrder inOrder = inOrder(sessionRepository);
+        inOrder.verify(sessionRepository).lockSessions(sessionIds);
+        inOrder.verify(sessionRepository).removeUserFromSessions(5L, sessionIds);
+        inOrder.verify(sessionRepository).releaseSeats(sessionIds);
+        verify(sessionRepository).addParticipant(1L, 3L);
+        verify(sessionRepository).addSeats(1L, 1);
+        verify(sessionRepository, never()).lockFreeSeats(2L);
+        verify(eventPublisher, times(2)).publishEvent(any(SessionChangedEvent.class));
+    }
+
+    @Test
+    void shouldNotRemoveAnythingWhenUserHasNoSession() {
+        // Arrange
+        when(sessionRepository.findSessionIdsOfUser(5L, PageRequest.of(0, 2))).thenReturn(Collections.emptyList());
+
+        // Act & Assert
+        assertThat(sessionService.removeFromSessions(5L, 2)).isZero();
+        verify(sessionRepository, never()).removeUserFromSessions(any(), any());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void shouldNotPublishAnythingWhenDeletingUnknownSession() {
+        // Arrange
+        when(sessionRepository.deleteSessions(Collections.singletonList(1L))).thenReturn(0);
+
+        // Act & Assert
+        assertThat(sessionService.delete(1L)).isFalse();
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void shouldDeletePastSessionsInChunks() {
+        // Arrange
+        Date before = new Date();
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<Integer>>getArgument(0).doInTransaction(null));
+        when(sessionRepository.findIdsBefore(before, PageRequest.of(0, 2)))
+                .thenReturn(Arrays.asList(1L, 2L), Arrays.asList(3L, 4L), Collections.singletonList(5L));
+        when(sessionRepository.deleteSessions(any())).thenReturn(2, 2, 1);
+
         // Act
-        sessionService.delete(sessionId);
+        int deleted = sessionService.deleteBefore(before, 2);
 
         // Assert
-        verify(sessionRepository).deleteById(sessionId);
+        assertThat(deleted).isEqualTo(5);
+        verify(transactionTemplate, times(3)).execute(any());
+        verify(sessionRepository).removeAllParticipants(Collections.singletonList(5L));
+        verify(eventPublisher, times(1)).publishEvent(any(SessionChangedEvent.class));
     }
 
     @Test
-    void shouldFindAllSessions() {
+    void shouldFindAllSessionViews() {
         // Arrange
-        Session session1 = new Session();
-        session1.setId(1L);
-        Session session2 = new Session();
-        session2.setId(2L);
-        List<Session> sessions = Arrays.asList(session1, session2);
-        when(sessionRepository.findAll()).thenReturn(sessions);
+        List<SessionView> views = Arrays.asList(mock(SessionView.class), mock(SessionView.class));
+        when(sessionRepository.findAllViews()).thenReturn(views);
 
         // Act
-        List<Session> result = sessionService.findAll();
+        List<SessionView> result = sessionService.findAllViews();
 
         // Assert
         assertThat(result).hasSize(2);
-        verify(sessionRepository).findAll();
+        verify(sessionRepository).findAllViews();
     }
 
     @Test
-    void shouldGetSessionById() {
+    void shouldFindFirstPageWhenNoCursor() {
         // Arrange
-        Long sessionId = 1L;
-        Session session = new Session();
-        session.setId(sessionId);
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+        SessionView view = mock(SessionView.class);
+        when(sessionRepository.findFirstViewPage(3)).thenReturn(Arrays.asList(view));
 
         // Act
-        Session result = sessionService.getById(sessionId);
+        List<SessionView> result = sessionService.findPage(null, 3);
 
         // Assert
-        assertThat(result).isNotNull();
-        assertThat(result.getId()).isEqualTo(sessionId);
-        verify(sessionRepository).findById(sessionId);
+        assertThat(result).containsExactly(view);
+        verify(sessionRepository).findFirstViewPage(3);
+    }
+
+    @Test
+    void shouldSeekPastCursorWhenFindingPage() {
+        // Arrange
+        Date date = new Date(1700000000000L);
+        SessionView view = mock(SessionView.class);
+        when(sessionRepository.findViewPageAfter(date, 7L, 3)).thenReturn(Arrays.asList(view));
+
+        // Act
+        List<SessionView> result = sessionService.findPage(new SessionCursor(date, 7L), 3);
+
+        // Assert
+        assertThat(result).containsExactly(view);
+        verify(sessionRepository).findViewPageAfter(date, 7L, 3);
+    }
+
+    @Test
+    void shouldFindSessionViewById() {
+        // Arrange
+        SessionView view = mock(SessionView.class);
+        when(sessionRepository.findViewById(1L)).thenReturn(Optional.of(view));
+
+        // Act
+        SessionView result = sessionService.findViewById(1L);
+
+        // Assert
+        assertThat(result).isSameAs(view);
+    }
+
+    @Test
+    void shouldReturnNullWhenSessionViewNotFound() {
+        // Arrange
+        when(sessionRepository.findViewById(1L)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThat(sessionService.findViewById(1L)).isNull();
     }
 
     @Test
@@ -112,38 +254,144 @@ public class SessionServiceTest {
         assertThat(result).isNotNull();
         assertThat(result.getName()).isEqualTo("Updated Session");
         assertThat(result.getId()).isEqualTo(sessionId);
+        verify(sessionRepository).lockFreeSeats(sessionId);
         verify(sessionRepository).save(session);
+        verify(sessionRepository).refreshParticipantCount(sessionId);
     }
 
     @Test
-    void shouldParticipateInSession() {
+    void shouldRejectOverbookedSessionOnCreateAndUpdate() {
         // Arrange
-        Long sessionId = 1L;
-        Long userId = 1L;
-        Session session = new Session();
-        session.setId(sessionId);
-        session.setUsers(new ArrayList<>());
-        User user = new User();
-        user.setId(userId);
+        Session session = Session.builder().name("Yoga").capacity(1).users(Arrays.asList(user(2L), user(3L))).build();
 
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-        when(sessionRepository.save(session)).thenReturn(session);
+        // Act & Assert
+        assertThatThrownBy(() -> sessionService.create(session)).isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> sessionService.update(1L, session)).isInstanceOf(BadRequestException.class);
+        verify(sessionRepository, never()).save(any());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void shouldPatchOnlyTheGivenFieldsAndLeaveParticipantsAlone() {
+        // Arrange
+        Session session = Session.builder().id(1L).name("Yoga").description("Old").capacity(10).participantCount(3).version(2L).build();
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(Integer.MAX_VALUE);
+        when(sessionRepository.getById(1L)).thenReturn(session);
+        SessionDto changes = new SessionDto();
+        changes.setDescription("New");
+        changes.setCapacity(null);
+        changes.setVersion(2L);
 
         // Act
-        sessionService.participate(sessionId, userId);
+        Session result = sessionService.patch(1L, changes, new HashSet<>(Arrays.asList("description", "capacity", "version")));
 
         // Assert
-        assertThat(session.getUsers()).contains(user);
-        verify(sessionRepository).findById(sessionId);
-        verify(userRepository).findById(userId);
-        verify(sessionRepository).save(session);
+        assertThat(result.getName()).isEqualTo("Yoga");
+        assertThat(result.getDescription()).isEqualTo("New");
+        assertThat(result.getCapacity()).isNull();
+        verify(sessionRepository, never()).save(any());
+        verify(sessionRepository, never()).addParticipants(any(), any());
+        verify(sessionRepository, never()).removeParticipants(any(), any());
+        verify(eventPublisher).publishEvent(any(SessionChangedEvent.class));
+    }
+
+    @Test
+    void shouldRejectPatchOfAStaleVersion() {
+        // Arrange
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(Integer.MAX_VALUE);
+        when(sessionRepository.getById(1L)).thenReturn(Session.builder().id(1L).name("Yoga").version(3L).build());
+        SessionDto changes = new SessionDto();
+        changes.setName("Pilates");
+        changes.setVersion(2L);
+
+        // Act & Assert
+        assertThatThrownBy(() -> sessionService.patch(1L, changes, new HashSet<>(Arrays.asList("name", "version"))))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void shouldPatchParticipantsByWritingOnlyTheDifference() {
+        // Arrange
+        Session session = Session.builder().id(1L).users(new ArrayList<>(Arrays.asList(user(2L), user(3L)))).build();
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(Integer.MAX_VALUE);
+        when(sessionRepository.getById(1L)).thenReturn(session);
+        when(userRepository.findAllActiveById(any())).thenReturn(Arrays.asList(user(3L), user(4L)));
+        SessionDto changes = new SessionDto();
+        changes.setUsers(Arrays.asList(3L, 4L));
+
+        // Act
+        sessionService.patch(1L, changes, Collections.singleton("users"));
+
+        // Assert
+        verify(sessionRepository).removeParticipants(1L, Collections.singletonList(2L));
+        verify(sessionRepository).addParticipants(1L, Collections.singletonList(4L));
+        verify(sessionRepository).refreshParticipantCount(1L);
+        assertThat(session.getUsers()).extracting(User::getId).containsExactly(2L, 3L);
+    }
+
+    @Test
+    void shouldRejectPatchWithUnknownParticipants() {
+        // Arrange
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(Integer.MAX_VALUE);
+        when(sessionRepository.getById(1L)).thenReturn(Session.builder().id(1L).build());
+        when(userRepository.findAllActiveById(any())).thenReturn(Collections.singletonList(user(3L)));
+        SessionDto changes = new SessionDto();
+        changes.setUsers(Arrays.asList(3L, 9L));
+
+        // Act & Assert
+        assertThatThrownBy(() -> sessionService.patch(1L, changes, Collections.singleton("users")))
+                .isInstanceOf(UnknownUsersException.class)
+                .extracting("userIds")
+                .isEqualTo(Collections.singletonList(9L));
+        verify(sessionRepository, never()).addParticipants(any(), any());
+    }
+
+    @Test
+    void shouldRejectPatchOfUnknownSession() {
+        // Arrange
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(null);
+
+        // Act & Assert
+        assertThatThrownBy(() -> sessionService.patch(1L, new SessionDto(), Collections.singleton("name")))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    void shouldParticipateInSession() {
+        // Arrange
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(Integer.MAX_VALUE);
+        when(userRepository.existsByIdAndDeletedAtIsNull(2L)).thenReturn(true);
+        when(sessionRepository.reserveSeat(1L)).thenReturn(1);
+        when(sessionRepository.addParticipant(1L, 2L)).thenReturn(1);
+
+        // Act
+        sessionService.participate(1L, 2L);
+
+        // Assert
+        verify(sessionRepository).reserveSeat(1L);
+        verify(sessionRepository).addParticipant(1L, 2L);
+        verify(sessionRepository, never()).findById(any());
+        verify(sessionRepository, never()).save(any());
+        verify(eventPublisher).publishEvent(any(SessionChangedEvent.class));
     }
 
     @Test
     void shouldThrowNotFoundExceptionWhenSessionNotFoundForParticipation() {
         // Arrange
-        when(sessionRepository.findById(1L)).thenReturn(Optional.empty());
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(null);
+
+        // Act & Assert
+        assertThatThrownBy(() -> sessionService.participate(1L, 1L))
+                .isInstanceOf(NotFoundException.class);
+        verify(sessionRepository, never()).addParticipant(any(), any());
+    }
+
+    @Test
+    void shouldThrowNotFoundExceptionWhenUserNotFoundForParticipation() {
+        // Arrange
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(Integer.MAX_VALUE);
+        when(userRepository.existsByIdAndDeletedAtIsNull(1L)).thenReturn(false);
 
         // Act & Assert
         assertThatThrownBy(() -> sessionService.participate(1L, 1L))
@@ -153,47 +401,62 @@ public class SessionServiceTest {
     @Test
     void shouldThrowBadRequestExceptionWhenAlreadyParticipating() {
         // Arrange
-        Long sessionId = 1L;
-        Long userId = 1L;
-        Session session = new Session();
-        User user = new User();
-        user.setId(userId);
-        session.setUsers(new ArrayList<>(Arrays.asList(user)));
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(Integer.MAX_VALUE);
+        when(userRepository.existsByIdAndDeletedAtIsNull(1L)).thenReturn(true);
+        when(sessionRepository.reserveSeat(1L)).thenReturn(1);
+        when(sessionRepository.addParticipant(1L, 1L)).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        // Act & Assert
+        assertThatThrownBy(() -> sessionService.participate(1L, 1L))
+                .isInstanceOf(BadRequestException.class);
+    }
+
+    @Test
+    void shouldThrowSessionFullExceptionWhenNoSeatLeft() {
+        // Arrange
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(Integer.MAX_VALUE);
+        when(userRepository.existsByIdAndDeletedAtIsNull(2L)).thenReturn(true);
+        when(sessionRepository.reserveSeat(1L)).thenReturn(0);
+        when(sessionRepository.countParticipant(1L, 2L)).thenReturn(0L);
+
+        // Act & Assert
+        assertThatThrownBy(() -> sessionService.participate(1L, 2L))
+                .isInstanceOf(SessionFullException.class);
+        verify(sessionRepository, never()).addParticipant(any(), any());
+    }
 
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+    @Test
+    void shouldThrowBadRequestExceptionWhenAlreadyParticipatingInFullSession() {
+        // Arrange
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(Integer.MAX_VALUE);
+        when(userRepository.existsByIdAndDeletedAtIsNull(2L)).thenReturn(true);
+        when(sessionRepository.reserveSeat(1L)).thenReturn(0);
+        when(sessionRepository.countParticipant(1L, 2L)).thenReturn(1L);
 
         // Act & Assert
-        assertThatThrownBy(() -> sessionService.participate(sessionId, userId))
+        assertThatThrownBy(() -> sessionService.participate(1L, 2L))
                 .isInstanceOf(BadRequestException.class);
     }
 
     @Test
     void shouldNoLongerParticipateInSession() {
         // Arrange
-        Long sessionId = 1L;
-        Long userId = 1L;
-        Session session = new Session();
-        User user = new User();
-        user.setId(userId);
-        session.setUsers(new ArrayList<>(Arrays.asList(user)));
-
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
-        when(sessionRepository.save(session)).thenReturn(session);
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(Integer.MAX_VALUE);
+        when(sessionRepository.removeParticipant(1L, 2L)).thenReturn(1);
 
         // Act
-        sessionService.noLongerParticipate(sessionId, userId);
+        sessionService.noLongerParticipate(1L, 2L);
 
         // Assert
-        assertThat(session.getUsers()).isEmpty();
-        verify(sessionRepository).findById(sessionId);
-        verify(sessionRepository).save(session);
+        verify(sessionRepository).removeParticipant(1L, 2L);
+        verify(sessionRepository).releaseSeat(1L);
+        verify(sessionRepository, never()).save(any());
     }
 
     @Test
     void shouldThrowNotFoundExceptionWhenSessionNotFoundForNoLongerParticipate() {
         // Arrange
-        when(sessionRepository.findById(1L)).thenReturn(Optional.empty());
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(null);
 
         // Act & Assert
         assertThatThrownBy(() -> sessionService.noLongerParticipate(1L, 1L))
@@ -203,15 +466,260 @@ public class SessionServiceTest {
     @Test
     void shouldThrowBadRequestExceptionWhenNotParticipating() {
         // Arrange
-        Long sessionId = 1L;
-        Long userId = 1L;
-        Session session = new Session();
-        session.setUsers(new ArrayList<>());
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(Integer.MAX_VALUE);
+        when(sessionRepository.removeParticipant(1L, 1L)).thenReturn(0);
+
+        // Act & Assert
+        assertThatThrownBy(() -> sessionService.noLongerParticipate(1L, 1L))
+                .isInstanceOf(BadRequestException.class);
+        verify(sessionRepository, never()).releaseSeat(any());
+    }
+
+    @Test
+    void shouldWaitlistUserWhenSessionIsFull() {
+        // Arrange
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(Integer.MAX_VALUE);
+        when(userRepository.existsByIdAndDeletedAtIsNull(2L)).thenReturn(true);
+        when(sessionRepository.reserveSeat(1L)).thenReturn(0);
+        when(sessionRepository.countParticipant(1L, 2L)).thenReturn(0L);
+
+        // Act
+        ParticipationStatus status = sessionService.participateOrWait(1L, 2L);
+
+        // Assert
+        assertThat(status).isEqualTo(ParticipationStatus.WAITLISTED);
+        verify(waitlistService).enqueue(1L, 2L);
+        verify(sessionRepository, never()).addParticipant(any(), any());
+    }
+
+    @Test
+    void shouldParticipateInsteadOfWaitingWhenSeatIsFree() {
+        // Arrange
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(Integer.MAX_VALUE);
+        when(userRepository.existsByIdAndDeletedAtIsNull(2L)).thenReturn(true);
+        when(sessionRepository.reserveSeat(1L)).thenReturn(1);
+
+        // Act
+        ParticipationStatus status = sessionService.participateOrWait(1L, 2L);
+
+        // Assert
+        assertThat(status).isEqualTo(ParticipationStatus.PARTICIPATING);
+        verify(sessionRepository).addParticipant(1L, 2L);
+        verify(waitlistService, never()).enqueue(any(), any());
+    }
+
+    @Test
+    void shouldThrowBadRequestExceptionWhenAlreadyWaiting() {
+        // Arrange
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(Integer.MAX_VALUE);
+        when(userRepository.existsByIdAndDeletedAtIsNull(2L)).thenReturn(true);
+        when(sessionRepository.reserveSeat(1L)).thenReturn(0);
+        when(sessionRepository.countParticipant(1L, 2L)).thenReturn(0L);
+        when(waitlistService.enqueue(1L, 2L)).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        // Act & Assert
+        assertThatThrownBy(() -> sessionService.participateOrWait(1L, 2L))
+                .isInstanceOf(BadRequestException.class);
+    }
 
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+    @Test
+    void shouldThrowBadRequestExceptionWhenLeavingWaitlistWithoutWaiting() {
+        // Arrange
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(waitlistService.leave(1L, 2L)).thenReturn(false);
 
         // Act & Assert
-        assertThatThrownBy(() -> sessionService.noLongerParticipate(sessionId, userId))
+        assertThatThrownBy(() -> sessionService.leaveWaitlist(1L, 2L))
                 .isInstanceOf(BadRequestException.class);
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldPromoteFirstWaitingUserWhenSeatIsFreed() {
+        // Arrange
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(0, 1);
+        when(sessionRepository.removeParticipant(1L, 2L)).thenReturn(1);
+        when(waitlistService.hasWaiting(1L)).thenReturn(true);
+        when(waitlistService.pollNext(1L)).thenReturn(3L);
+        when(userRepository.existsByIdAndDeletedAtIsNull(3L)).thenReturn(true);
+        when(sessionRepository.countParticipant(1L, 3L)).thenReturn(0L);
+
+        // Act
+        sessionService.noLongerParticipate(1L, 2L);
+
+        // Assert
+        verify(sessionRepository).removeParticipant(1L, 2L);
+        verify(sessionRepository).releaseSeat(1L);
+        verify(sessionRepository).addParticipant(1L, 3L);
+        verify(sessionRepository).addSeats(1L, 1);
+        verify(waitlistService, times(1)).pollNext(1L);
+    }
+
+    @Test
+    void shouldLeaveSeatFreeWhenNoWaitingUserCanBePromoted() {
+        // Arrange
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(0, 1);
+        when(sessionRepository.removeParticipant(1L, 2L)).thenReturn(1);
+        when(waitlistService.hasWaiting(1L)).thenReturn(true);
+        when(waitlistService.pollNext(1L)).thenReturn(3L, (Long) null);
+        when(userRepository.existsByIdAndDeletedAtIsNull(3L)).thenReturn(false);
+
+        // Act
+        sessionService.noLongerParticipate(1L, 2L);
+
+        // Assert
+        verify(sessionRepository, never()).addParticipant(any(), any());
+        verify(sessionRepository, never()).addSeats(any(), anyInt());
+        verify(sessionRepository, times(1)).releaseSeat(1L);
+    }
+
+    @Test
+    void shouldPromoteWaitingUsersWhenPatchRemovesParticipants() {
+        // Arrange
+        Session session = Session.builder().id(1L).capacity(2).users(new ArrayList<>(Arrays.asList(user(2L), user(3L)))).build();
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(0, 1);
+        when(sessionRepository.getById(1L)).thenReturn(session);
+        when(userRepository.findAllActiveById(any())).thenReturn(Collections.singletonList(user(3L)));
+        when(waitlistService.hasWaiting(1L)).thenReturn(true);
+        when(waitlistService.pollNext(1L)).thenReturn(7L);
+        when(userRepository.existsByIdAndDeletedAtIsNull(7L)).thenReturn(true);
+        SessionDto changes = new SessionDto();
+        changes.setUsers(Collections.singletonList(3L));
+
+        // Act
+        sessionService.patch(1L, changes, Collections.singleton("users"));
+
+        // Assert
+        InOrder inOrder = inOrder(sessionRepository);
+        inOrder.verify(sessionRepository).removeParticipants(1L, Collections.singletonList(2L));
+        inOrder.verify(sessionRepository).refreshParticipantCount(1L);
+        inOrder.verify(sessionRepository).addParticipant(1L, 7L);
+        inOrder.verify(sessionRepository).addSeats(1L, 1);
+    }
+
+    @Test
+    void shouldPromoteWaitingUsersInOrderWhenPatchRaisesCapacity() {
+        // Arrange
+        Session session = Session.builder().id(1L).capacity(1).participantCount(1).build();
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(0, 2);
+        when(sessionRepository.getById(1L)).thenReturn(session);
+        when(waitlistService.hasWaiting(1L)).thenReturn(true);
+        when(waitlistService.pollNext(1L)).thenReturn(7L, 8L, 9L);
+        when(userRepository.existsByIdAndDeletedAtIsNull(any())).thenReturn(true);
+        SessionDto changes = new SessionDto();
+        changes.setCapacity(3);
+
+        // Act
+        sessionService.patch(1L, changes, Collections.singleton("capacity"));
+
+        // Assert
+        InOrder inOrder = inOrder(sessionRepository);
+        inOrder.verify(sessionRepository).addParticipant(1L, 7L);
+        inOrder.verify(sessionRepository).addParticipant(1L, 8L);
+        inOrder.verify(sessionRepository).addSeats(1L, 2);
+        verify(sessionRepository, never()).addParticipant(1L, 9L);
+        verify(waitlistService, times(2)).pollNext(1L);
+    }
+
+    @Test
+    void shouldServeWaitingUsersBeforeBulkParticipants() {
+        // Arrange
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(1);
+        when(waitlistService.hasWaiting(1L)).thenReturn(true);
+        when(waitlistService.pollNext(1L)).thenReturn(7L);
+        when(userRepository.existsByIdAndDeletedAtIsNull(7L)).thenReturn(true);
+        when(userRepository.findAllActiveById(any())).thenReturn(Collections.singletonList(user(2L)));
+
+        // Act
+        Map<Long, ParticipationResult> results = sessionService.participateAll(1L, Collections.singletonList(2L));
+
+        // Assert
+        assertThat(results).containsExactly(entry(2L, ParticipationResult.SESSION_FULL));
+        verify(sessionRepository).addParticipant(1L, 7L);
+        verify(sessionRepository, never()).addParticipants(any(), any());
+        verify(eventPublisher).publishEvent(any(SessionChangedEvent.class));
+    }
+
+    @Test
+    void shouldReportPerUserResultOfBulkParticipation() {
+        // Arrange
+        List<Long> userIds = Arrays.asList(2L, 3L, 4L, 5L, 2L);
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(1);
+        when(userRepository.findAllActiveById(any())).thenReturn(Arrays.asList(user(2L), user(3L), user(4L)));
+        when(sessionRepository.findParticipantIds(any(), any())).thenReturn(Arrays.asList(3L));
+
+        // Act
+        Map<Long, ParticipationResult> results = sessionService.participateAll(1L, userIds);
+
+        // Assert
+        assertThat(results).containsExactly(
+                entry(2L, ParticipationResult.ADDED),
+                entry(3L, ParticipationResult.ALREADY_PRESENT),
+                entry(4L, ParticipationResult.SESSION_FULL),
+                entry(5L, ParticipationResult.UNKNOWN_USER));
+        verify(sessionRepository).addParticipants(1L, Arrays.asList(2L));
+        verify(sessionRepository).addSeats(1L, 1);
+    }
+
+    @Test
+    void shouldThrowNotFoundExceptionWhenSessionNotFoundForBulkParticipation() {
+        // Arrange
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(null);
+
+        // Act & Assert
+        assertThatThrownBy(() -> sessionService.participateAll(1L, Arrays.asList(2L)))
+                .isInstanceOf(NotFoundException.class);
+        verify(userRepository, never()).findAllActiveById(any());
+    }
+
+    private User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+
+    @Test
+    void shouldFindSessionsFromDateWhenRangeIsOpen() {
+        // Arrange
+        Date from = new Date();
+        SessionView view = mock(SessionView.class);
+        when(sessionRepository.findViewsFrom(from)).thenReturn(Collections.singletonList(view));
+
+        // Act
+        List<SessionView> result = sessionService.findBetween(from, null);
+
+        // Assert
+        assertThat(result).containsExactly(view);
+        verify(sessionRepository, never()).findViewsBetween(any(), any());
+    }
+
+    @Test
+    void shouldFindSessionsBetweenDates() {
+        // Arrange
+        Date from = new Date(1_000L);
+        Date to = new Date(2_000L);
+        when(sessionRepository.findViewsBetween(from, to)).thenReturn(Collections.emptyList());
+
+        // Act
+        List<SessionView> result = sessionService.findBetween(from, to);
+
+        // Assert
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    void shouldHandEverySessionToTheActionAndCloseTheCursor() {
+        // Arrange
+        SessionView first = mock(SessionView.class);
+        SessionView second = mock(SessionView.class);
+        AtomicBoolean closed = new AtomicBoolean();
+        when(sessionRepository.streamAllViews()).thenReturn(Stream.of(first, second).onClose(() -> closed.set(true)));
+        List<SessionView> exported = new ArrayList<>();
+
+        // Act
+        sessionService.forEachView(exported::add);
+
+        // Assert
+        assertThat(exported).containsExactly(first, second);
+        assertThat(closed).isTrue();
+    }
+}
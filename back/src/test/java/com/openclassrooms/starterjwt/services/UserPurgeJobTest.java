@@ -0,0 +1,175 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.exception.UnknownUsersException;
+import com.openclassrooms.starterjwt.payload.response.SessionImportResponse;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {"oc.app.userPurge.batchSize=2", "oc.app.userPurge.graceMs=0"})
+@ActiveProfiles("test")
+class UserPurgeJobTest {
+
+    private static final String NAME_PREFIX = "up-";
+
+    @Autowired
+    private UserPurgeJob userPurgeJob;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private SessionImportService sessionImportService;
+
+    @Autowired
+    private WaitlistService waitlistService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long deletedId;
+
+    private Long waitingId;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO USERS (email, password, first_name, last_name, admin) VALUES (?, 'hash', 'User', ?, false)",
+                NAME_PREFIX + "deleted@studio.com", NAME_PREFIX + "deleted");
+        jdbcTemplate.update("INSERT INTO USERS (email, password, first_name, last_name, admin) VALUES (?, 'hash', 'User', ?, false)",
+                NAME_PREFIX + "waiting@studio.com", NAME_PREFIX + "waiting");
+        deletedId = jdbcTemplate.queryForObject("SELECT id FROM USERS WHERE last_name = ?", Long.class, NAME_PREFIX + "deleted");
+        waitingId = jdbcTemplate.queryForObject("SELECT id FROM USERS WHERE last_name = ?", Long.class, NAME_PREFIX + "waiting");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM WAITLIST WHERE session_id IN (SELECT id FROM SESSIONS WHERE name LIKE 'up-%')");
+        jdbcTemplate.update("DELETE FROM PARTICIPATE WHERE session_id IN (SELECT id FROM SESSIONS WHERE name LIKE 'up-%')");
+        jdbcTemplate.update("DELETE FROM SESSIONS WHERE name LIKE 'up-%'");
+        jdbcTemplate.update("DELETE FROM USERS WHERE last_name LIKE 'up-%'");
+    }
+
+    @Test
+    void deletedUserShouldBeRejectedAtOnceAndPurgedInBatches() {
+        // Arrange
+        Long full = createSession("full", 1);
+        Long open1 = createSession("open-1", null);
+        Long open2 = createSession("open-2", null);
+        for (Long sessionId : new Long[]{full, open1, open2}) {
+            jdbcTemplate.update("INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, ?)", sessionId, deletedId);
+            jdbcTemplate.update("UPDATE SESSIONS SET participant_count = 1 WHERE id = ?", sessionId);
+        }
+        jdbcTemplate.update("INSERT INTO WAITLIST (session_id, user_id) VALUES (?, ?)", full, waitingId);
+        long purgedBefore = userPurgeJob.getUsersPurged();
+        long removedBefore = userPurgeJob.getParticipationsRemoved();
+
+        // Act
+        userService.delete(deletedId);
+
+        // Assert
+        assertThat(userService.findById(deletedId)).isNull();
+        assertThatThrownBy(() -> userDetailsService.loadUserByUsername(NAME_PREFIX + "deleted@studio.com"))
+                .isInstanceOf(UsernameNotFoundException.class);
+        assertThat(userPurgeJob.getPendingCount()).isEqualTo(1L);
+
+        // Act
+        userPurgeJob.run();
+
+        // Assert
+        assertThat(userPurgeJob.getPendingCount()).isZero();
+        assertThat(userPurgeJob.getUsersPurged() - purgedBefore).isEqualTo(1L);
+        assertThat(userPurgeJob.getParticipationsRemoved() - removedBefore).isEqualTo(3L);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM USERS WHERE id = ?", Long.class, deletedId)).isZero();
+        assertThat(participantIds(full)).containsExactly(waitingId);
+        assertThat(participantIds(open1)).isEmpty();
+        assertThat(participantCount(full)).isEqualTo(1);
+        assertThat(participantCount(open1)).isZero();
+        assertThat(participantCount(open2)).isZero();
+    }
+
+    @Test
+    void deletedUserShouldBeKeptDuringTheGracePeriod() {
+        // Arrange
+        UserPurgeJob patientJob = new UserPurgeJob(userRepository, sessionService, waitlistService, 2, 3_600_000L);
+        userService.delete(deletedId);
+
+        // Act
+        patientJob.run();
+
+        // Assert
+        assertThat(patientJob.getUsersPurged()).isZero();
+        assertThat(patientJob.getPendingCount()).isEqualTo(1L);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM USERS WHERE id = ?", Long.class, deletedId)).isEqualTo(1L);
+    }
+
+    @Test
+    void deletedUserShouldNotBeBookedBeforeBeingPurged() {
+        // Arrange
+        Long sessionId = createSession("bookings", null);
+        userService.delete(deletedId);
+        Long teacherId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM TEACHERS", Long.class);
+        SessionDto imported = new SessionDto();
+        imported.setName(NAME_PREFIX + "imported");
+        imported.setDate(new Date());
+        imported.setTeacher_id(teacherId);
+        imported.setDescription("Purge fixture");
+        imported.setUsers(Collections.singletonList(deletedId));
+        SessionDto patch = new SessionDto();
+        patch.setUsers(Arrays.asList(waitingId, deletedId));
+
+        // Act
+        Map<Long, ParticipationResult> results = sessionService.participateAll(sessionId, Arrays.asList(deletedId, waitingId));
+        SessionImportResponse response = sessionImportService.importSessions(Collections.singletonList(imported));
+
+        // Assert
+        assertThat(results).containsEntry(deletedId, ParticipationResult.UNKNOWN_USER)
+                .containsEntry(waitingId, ParticipationResult.ADDED);
+        assertThatThrownBy(() -> sessionService.patch(sessionId, patch, Collections.singleton("users")))
+                .isInstanceOf(UnknownUsersException.class);
+        assertThat(response.getIds()).isEmpty();
+        assertThat(response.getErrors().get(1)).containsExactly("users " + deletedId + " does not exist");
+        assertThat(participantIds(sessionId)).containsExactly(waitingId);
+    }
+
+    private Long createSession(String name, Integer capacity) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.update("INSERT INTO SESSIONS (name, date, description, capacity, participant_count, created_at, updated_at) "
+                + "VALUES (?, ?, 'Purge fixture', ?, 0, ?, ?)", NAME_PREFIX + name, now, capacity, now, now);
+        return jdbcTemplate.queryForObject("SELECT id FROM SESSIONS WHERE name = ?", Long.class, NAME_PREFIX + name);
+    }
+
+    private List<Long> participantIds(Long sessionId) {
+        return jdbcTemplate.queryForList("SELECT user_id FROM PARTICIPATE WHERE session_id = ?", Long.class, sessionId);
+    }
+
+    private int participantCount(Long sessionId) {
+        return jdbcTemplate.queryForObject("SELECT participant_count FROM SESSIONS WHERE id = ?", Integer.class, sessionId);
+    }
+}
@@ -2,12 +2,18 @@ package com.openclassrooms.starterjwt.services;
 
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.UserDenyList;
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -19,6 +25,12 @@ public class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private UserDetailsCache userDetailsCache;
+
+    @Mock
+    private UserDenyList userDenyList;
+
     @InjectMocks
     private UserService userService;
 
@@ -31,7 +43,10 @@ public class UserServiceTest {
         userService.delete(userId);
 
         // Assert
-        verify(userRepository).deleteById(userId);
+        InOrder inOrder = inOrder(userRepository, userDenyList, userDetailsCache);
+        inOrder.verify(userRepository).markDeleted(userId);
+        inOrder.verify(userDenyList).revoke(userId);
+        inOrder.verify(userDetailsCache).evictById(userId);
         verifyNoMoreInteractions(userRepository);
     }
 
@@ -55,6 +70,21 @@ public class UserServiceTest {
         verifyNoMoreInteractions(userRepository);
     }
 
+    @Test
+    void shouldNotFindDeletedUsers() {
+        // Arrange
+        User deleted = new User().setId(1L).setDeletedAt(LocalDateTime.now());
+        User active = new User().setId(2L);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(deleted));
+        when(userRepository.findAllActiveById(Arrays.asList(1L, 2L))).thenReturn(Collections.singletonList(active));
+
+        // Act & Assert
+        assertThat(userService.findById(1L)).isNull();
+        assertThat(userService.findAllById(Arrays.asList(1L, 2L))).containsExactly(active);
+        assertThat(userService.findAllById(Collections.emptyList())).isEmpty();
+        verify(userRepository, times(1)).findAllActiveById(any());
+    }
+
     @Test
     void shouldReturnNullWhenUserNotFound() {
         // Arrange
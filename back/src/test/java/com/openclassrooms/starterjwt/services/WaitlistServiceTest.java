@@ -0,0 +1,107 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class WaitlistServiceTest {
+
+    @Mock
+    private WaitlistRepository waitlistRepository;
+
+    @InjectMocks
+    private WaitlistService waitlistService;
+
+    @Test
+    void shouldEnqueueInDatabase() {
+        // Arrange
+        when(waitlistRepository.saveAndFlush(any())).thenReturn(entry(12L, 1L, 7L));
+
+        // Act
+        WaitlistEntry entry = waitlistService.enqueue(1L, 7L);
+
+        // Assert
+        assertThat(entry.getId()).isEqualTo(12L);
+        verify(waitlistRepository).saveAndFlush(any(WaitlistEntry.class));
+    }
+
+    @Test
+    void shouldReturnWaitingUsersInInsertionOrder() {
+        // Arrange
+        when(waitlistRepository.findBySessionIdOrderByIdAsc(1L)).thenReturn(Arrays.asList(entry(10L, 1L, 5L), entry(11L, 1L, 6L)));
+
+        // Act & Assert
+        assertThat(waitlistService.getWaitingUserIds(1L)).containsExactly(5L, 6L);
+    }
+
+    @Test
+    void shouldPollFirstWaitingUser() {
+        // Arrange
+        when(waitlistRepository.lockFirst(1L)).thenReturn(Optional.of(entry(10L, 1L, 5L)));
+
+        // Act
+        Long next = waitlistService.pollNext(1L);
+
+        // Assert
+        assertThat(next).isEqualTo(5L);
+        verify(waitlistRepository).deleteEntry(10L);
+    }
+
+    @Test
+    void shouldPollNothingWhenNobodyIsWaiting() {
+        // Arrange
+        when(waitlistRepository.lockFirst(1L)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThat(waitlistService.pollNext(1L)).isNull();
+        verify(waitlistRepository, never()).deleteEntry(any());
+    }
+
+    @Test
+    void shouldTellWhetherUsersAreWaiting() {
+        // Arrange
+        when(waitlistRepository.existsBySessionId(1L)).thenReturn(true);
+
+        // Act & Assert
+        assertThat(waitlistService.hasWaiting(1L)).isTrue();
+        assertThat(waitlistService.hasWaiting(2L)).isFalse();
+    }
+
+    @Test
+    void shouldLeaveWaitlist() {
+        // Arrange
+        WaitlistEntry entry = entry(10L, 1L, 5L);
+        when(waitlistRepository.findBySessionIdAndUserId(1L, 5L)).thenReturn(Optional.of(entry));
+        when(waitlistRepository.deleteEntry(10L)).thenReturn(1);
+
+        // Act & Assert
+        assertThat(waitlistService.leave(1L, 5L)).isTrue();
+    }
+
+    @Test
+    void shouldNotLeaveWaitlistWhenNotWaiting() {
+        // Arrange
+        when(waitlistRepository.findBySessionIdAndUserId(1L, 5L)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThat(waitlistService.leave(1L, 5L)).isFalse();
+    }
+
+    private WaitlistEntry entry(Long id, Long sessionId, Long userId) {
+        return new WaitlistEntry().setId(id).setSessionId(sessionId).setUserId(userId);
+    }
+}
@@ -12,8 +12,12 @@ CREATE TABLE `SESSIONS` (
   `description` VARCHAR(2000),
   `date` TIMESTAMP,
   `teacher_id` int,
+  `capacity` INT,
+  `participant_count` INT NOT NULL DEFAULT 0,
+  `version` BIGINT NOT NULL DEFAULT 0,
   `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-  `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+  `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  KEY `IDX_SESSIONS_DATE` (`date`, `id`)
 );
 
 CREATE TABLE `USERS` (
@@ -23,18 +27,33 @@ CREATE TABLE `USERS` (
   `admin` BOOLEAN NOT NULL DEFAULT false,
   `email` VARCHAR(255),
   `password` VARCHAR(255),
+  `deleted_at` DATETIME,
   `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-  `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+  `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  KEY `IDX_USERS_DELETED_AT` (`deleted_at`)
 );
 
 CREATE TABLE `PARTICIPATE` (
   `user_id` INT, 
-  `session_id` INT
+  `session_id` INT,
+  UNIQUE KEY `UK_PARTICIPATE_SESSION_USER` (`session_id`, `user_id`),
+  KEY `IDX_PARTICIPATE_USER` (`user_id`, `session_id`)
+);
+
+CREATE TABLE `WAITLIST` (
+  `id` INT PRIMARY KEY AUTO_INCREMENT,
+  `session_id` INT NOT NULL,
+  `user_id` INT NOT NULL,
+  `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  UNIQUE KEY `UK_WAITLIST_SESSION_USER` (`session_id`, `user_id`),
+  KEY `IDX_WAITLIST_SESSION` (`session_id`, `id`)
 );
 
 ALTER TABLE `SESSIONS` ADD FOREIGN KEY (`teacher_id`) REFERENCES `TEACHERS` (`id`);
 ALTER TABLE `PARTICIPATE` ADD FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`);
 ALTER TABLE `PARTICIPATE` ADD FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`);
+ALTER TABLE `WAITLIST` ADD FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`) ON DELETE CASCADE;
+ALTER TABLE `WAITLIST` ADD FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`) ON DELETE CASCADE;
 
 INSERT INTO TEACHERS (first_name, last_name)
 VALUES ('Margot', 'DELAHAYE'),